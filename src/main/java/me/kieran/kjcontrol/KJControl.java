@@ -2,9 +2,12 @@ package me.kieran.kjcontrol;
 
 import me.kieran.kjcontrol.listener.ChatListener;
 import me.kieran.kjcontrol.listener.InventoryListener;
+import me.kieran.kjcontrol.listener.LocationListener;
 import me.kieran.kjcontrol.listener.PlayerListener;
 import me.kieran.kjcontrol.util.ChatFormatUtil;
+import me.kieran.kjcontrol.util.ChatLogUtil;
 import me.kieran.kjcontrol.util.ConfigUtil;
+import me.kieran.kjcontrol.util.FileWatcherUtil;
 import me.kieran.kjcontrol.util.MessagesUtil;
 import net.kyori.adventure.text.Component;
 import org.bukkit.event.HandlerList;
@@ -64,6 +67,7 @@ public class KJControl extends JavaPlugin {
             - ChatListener handles chat formatting
             - InventoryListener handles menu interactions
             - PlayerListener handles player-related events (join, quit, etc.)
+            - LocationListener keeps track of player positions for local chat
 
             Registering them here tells the server:
             "Call these classes when relevant events happen."
@@ -71,6 +75,7 @@ public class KJControl extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new ChatListener(), this);
         getServer().getPluginManager().registerEvents(new InventoryListener(), this);
         getServer().getPluginManager().registerEvents(new PlayerListener(), this);
+        getServer().getPluginManager().registerEvents(new LocationListener(), this);
     }
 
     /*
@@ -87,6 +92,15 @@ public class KJControl extends JavaPlugin {
             - no events firing after the plugin is disabled.
          */
         HandlerList.unregisterAll(this);
+
+        /*
+            Stop the chat log writer, after it has written
+            every line still waiting in its queue.
+         */
+        ChatLogUtil.shutdown();
+
+        // Stop watching the plugin folder for changes.
+        FileWatcherUtil.shutdown();
     }
 
     /*
@@ -1,5 +1,7 @@
 package me.kieran.kjcontrol.command;
 
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.tree.LiteralCommandNode;
 import io.papermc.paper.command.brigadier.CommandSourceStack;
 import io.papermc.paper.command.brigadier.Commands;
@@ -58,6 +60,34 @@ public class KJControlCommand {
                     .executes(CommandUtil::executeReload)
             )
 
+            /*
+                "/kjcontrol history [lines]"
+
+                Shows recent chat, including local chat,
+                with the time each line was sent.
+             */
+            .then(Commands.literal("history")
+                    .requires(sender -> sender.getSender().hasPermission("kjcontrol.history"))
+                    .executes(ctx -> CommandUtil.executeHistory(ctx, 20))
+                    .then(Commands.argument("lines", IntegerArgumentType.integer(1, 100))
+                            .executes(ctx -> CommandUtil.executeHistory(ctx, IntegerArgumentType.getInteger(ctx, "lines")))
+                    )
+            )
+
+            /*
+                "/kjcontrol menu <name>"
+
+                Opens a paginated menu defined in menus.yml.
+                Each menu can require its own permission too.
+             */
+            .then(Commands.literal("menu")
+                    .requires(sender -> sender.getSender().hasPermission("kjcontrol.menu"))
+                    .then(Commands.argument("name", StringArgumentType.word())
+                            .suggests(CommandUtil::suggestMenus)
+                            .executes(CommandUtil::executeMenu)
+                    )
+            )
+
             /*
                 "/kjcontrol help"
 
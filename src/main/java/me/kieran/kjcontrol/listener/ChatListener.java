@@ -1,10 +1,20 @@
 package me.kieran.kjcontrol.listener;
 
 import io.papermc.paper.event.player.AsyncChatEvent;
+import me.kieran.kjcontrol.record.CompiledFilter;
+import me.kieran.kjcontrol.record.ConfigSnapshot;
+import me.kieran.kjcontrol.record.FilterResult;
 import me.kieran.kjcontrol.util.ChatFormatUtil;
+import me.kieran.kjcontrol.util.ChatHistoryUtil;
+import me.kieran.kjcontrol.util.ChatLimitUtil;
+import me.kieran.kjcontrol.util.ChatLogUtil;
 import me.kieran.kjcontrol.util.ConfigUtil;
-import net.kyori.adventure.text.Component;
+import me.kieran.kjcontrol.util.LocalChatUtil;
+import me.kieran.kjcontrol.util.MetricsUtil;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 
 /*
@@ -17,15 +27,80 @@ import org.bukkit.event.Listener;
  */
 public class ChatListener implements Listener {
 
+    /*
+        Runs before any other chat handling to throttle spam.
+
+        Messages over the player's rate limit, or repeating their
+        last message, are cancelled here - before any PlaceholderAPI
+        or MiniMessage work is done for them.
+     */
+    @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+    public void onChatLimit(AsyncChatEvent event) {
+        if (!ChatLimitUtil.isEnabled()) return;
+
+        Player player = event.getPlayer();
+        ChatLimitUtil.Result result = ChatLimitUtil.check(player, event.signedMessage().message());
+        if (result == ChatLimitUtil.Result.ALLOWED) return;
+
+        event.setCancelled(true);
+        player.sendMessage(ChatLimitUtil.getBlockedMessage(result));
+    }
+
+    /*
+        Runs the message through the word filter.
+
+        This happens after the rate limiter but before the chat
+        format is applied, so blocked messages cost no rendering.
+     */
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+    public void onChatFilter(AsyncChatEvent event) {
+        ConfigSnapshot config = ConfigUtil.snapshot();
+        if (!config.isFilterLoaded()) return;
+
+        CompiledFilter filter = config.filter();
+
+        /*
+            Filter what will actually be shown, which may differ from
+            the signed message if another plugin has changed it.
+         */
+        String message = PlainTextComponentSerializer.plainText().serialize(event.message());
+        FilterResult result = filter.filter(message);
+
+        if (result.blocked()) {
+            event.setCancelled(true);
+            event.getPlayer().sendMessage(filter.blockedMessage());
+            return;
+        }
+
+        // Only replace the message if a word was actually censored.
+        if (result.message() != message) event.message(filter.censor(event.message(), message, result.message()));
+    }
+
     /*
         Fired asynchronously whenever a player sends a chat message.
 
         AsyncChatEvent allows custom rendering of chat messages
         using Adventure Components.
      */
-    @EventHandler
+    @EventHandler(ignoreCancelled = true)
     public void onChat(AsyncChatEvent event) {
 
+        /*
+            Read the loaded configuration once, so this whole
+            message uses one consistent load even if a reload
+            happens part way through.
+         */
+        ConfigSnapshot config = ConfigUtil.snapshot();
+
+        /*
+            Limit who sees the message to players near the sender
+            when local chat is enabled.
+
+            This is independent of the chat format, so it still
+            applies if formatting is disabled or failed to load.
+         */
+        if (LocalChatUtil.isEnabled()) LocalChatUtil.narrowViewers(event.getPlayer(), event.viewers());
+
         /*
         Exit early if:
         - The chat format feature is disabled in config.yml
@@ -34,7 +109,7 @@ public class ChatListener implements Listener {
         This ensures vanilla chat behaviour is preserved
         when formatting is unavailable.
      */
-        if (!ConfigUtil.chatFormatEnabled || !ChatFormatUtil.isLoaded()) return;
+        if (!config.isChatFormatLoaded()) return;
 
         /*
             Override the chat renderer for this message.
@@ -42,15 +117,36 @@ public class ChatListener implements Listener {
             The renderer is called once per viewer and is responsible
             for producing the final chat Component.
 
-            Parameters:
-            - source  -> the player who sent the message
-            - _       -> the source display name (unused)
-            - message -> the original chat message Component
-            - _       -> the viewer receiving the message (unused)
+            ChatFormatUtil decides how much of that work is actually
+            repeated: formats that look the same to everyone are
+            rendered once and shared between all viewers.
 
-            All formatting logic is delegated to ChatFormatUtil.
+            The sender's format was already chosen when they joined
+            (or when their permissions last changed), so no
+            permission checks happen here.
          */
-        event.renderer((source, sourceDisplayName, message, audience) -> ChatFormatUtil.getFormat(source, message));
+        event.renderer(ChatFormatUtil.getRenderer(config.chatFormats(), event.getPlayer()));
+    }
+
+    /*
+        Counts the message for the performance dashboard, and
+        records it in the chat history and chat log once every
+        other plugin has finished with it.
+
+        MONITOR priority means the message is final here,
+        including any censoring done by the word filter.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChatRecord(AsyncChatEvent event) {
+        MetricsUtil.countChatMessage();
+
+        if (!ChatHistoryUtil.isEnabled() && !ChatLogUtil.isEnabled()) return;
+
+        Player player = event.getPlayer();
+        String message = PlainTextComponentSerializer.plainText().serialize(event.message());
+
+        ChatHistoryUtil.record(player, message, !LocalChatUtil.isEnabled());
+        ChatLogUtil.logChat(player, message);
     }
 
 }
@@ -1,124 +1,62 @@
 package me.kieran.kjcontrol.listener;
 
-import me.kieran.kjcontrol.menu.KJControlMenu;
-import me.kieran.kjcontrol.util.ChatFormatUtil;
-import me.kieran.kjcontrol.util.ConfigUtil;
-import me.kieran.kjcontrol.util.MessagesUtil;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.format.NamedTextColor;
-import org.bukkit.Material;
-import org.bukkit.entity.HumanEntity;
+import me.kieran.kjcontrol.menu.Menu;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.InventoryClickEvent;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.event.inventory.InventoryDragEvent;
 
 /*
-    Listens for inventory click events and handles interactions
-    with the KJControl menu.
+    Listens for inventory events and hands clicks in
+    KJControl menus over to the menu they belong to.
 
     This listener:
-    - Identifies clicks inside the KJControlMenu
-    - Cancels default inventory behaviour
-    - Executes actions based on the clicked item
+    - Identifies views with a KJControl Menu on top
+    - Cancels default inventory behaviour in them
+    - Leaves working out the action to the Menu itself
+
+    Every inventory click on the server passes through here,
+    so anything that isn't a KJControl menu is turned away
+    with a single holder check before any other work.
  */
 public class InventoryListener implements Listener {
 
     /*
         Fired whenever a player clicks inside an inventory.
-
-        This method filters events so only clicks inside
-        the KJControl menu are handled.
      */
     @EventHandler
     public void onInventoryClick(InventoryClickEvent event) {
         /*
-            Get the inventory that was clicked.
-
-            getClickedInventory() may return null if the player
-            clicked outside the inventory window.
-         */
-        Inventory inventory = event.getClickedInventory();
-
-        /*
-            Exit early if:
-            - No inventory was clicked
-            - The inventory is not owned by KJControlMenu
+            Exit early if the top inventory of the view is not
+            a KJControl menu.
 
-            Using InventoryHolder is the safest way to
-            identify custom menus.
+            getInventory() is always the top inventory, even when
+            the player clicked their own inventory below it.
+            getHolder(false) skips creating a block state snapshot,
+            which is what makes this check cheap for other inventories.
          */
-        if (inventory == null || !(inventory.getHolder(false) instanceof KJControlMenu)) {
-            return;
-        }
+        if (!(event.getInventory().getHolder(false) instanceof Menu menu)) return;
 
         /*
             Cancel the event to prevent players from:
             - Moving items
             - Taking menu items
-            - Interacting with the inventory normally
+            - Shift-clicking their own items into the menu
          */
         event.setCancelled(true);
 
-        /*
-            Get the entity that clicked the inventory.
-
-            This will usually be a Player, but the type
-            is HumanEntity to remain API-safe.
-         */
-        HumanEntity clicker = event.getWhoClicked();
-
-        /*
-            Get the item that was clicked.
-
-            This can be null if the player clicked
-            an empty slot.
-         */
-        ItemStack clicked = event.getCurrentItem();
-
-        // Only continue if an actual item was clicked
-        if (clicked != null) {
-
-            /*
-                Determine which menu item was clicked
-                based on its material type.
+        // Clicks in the player's own inventory do nothing else.
+        if (event.getClickedInventory() != event.getInventory()) return;
 
-                Since these items are uniquely defined
-                by MenuUtil, this is safe and readable.
-             */
-            switch (clicked.getType()) {
-                // Emerald block = Reload config
-                case Material.EMERALD_BLOCK:
-                    if (!clicker.hasPermission("kjcontrol.reload")) {
-                        clicker.sendMessage(MessagesUtil.noPermissionMessage("kjcontrol.reload"));
-                        break;
-                    }
-                    ConfigUtil.load(clicker);
-                    break;
-                // Diamond block = Preview chat format
-                case Material.DIAMOND_BLOCK:
-                    if (!clicker.hasPermission("kjcontrol.preview")) {
-                        clicker.sendMessage(MessagesUtil.noPermissionMessage("kjcontrol.preview"));
-                        break;
-                    }
-                    clicker.sendMessage(
-                            ChatFormatUtil.getFormat(
-                                    clicker,
-                                    Component.text("Only you can see this preview!")
-                            )
-                    );
-                    break;
-            }
-
-            /*
-                Close the menu after an action is taken.
+        menu.handleClick(event);
+    }
 
-                This provides immediate feedback and
-                prevents repeated clicks.
-             */
-            clicker.closeInventory();
-        }
+    /*
+        Stops items being dragged across a KJControl menu.
+     */
+    @EventHandler
+    public void onInventoryDrag(InventoryDragEvent event) {
+        if (event.getInventory().getHolder(false) instanceof Menu) event.setCancelled(true);
     }
 
 }
@@ -0,0 +1,63 @@
+package me.kieran.kjcontrol.listener;
+
+import me.kieran.kjcontrol.util.LocalChatUtil;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/*
+    Keeps the local chat spatial index up to date.
+
+    Every handler runs at MONITOR priority, so the index
+    only ever sees where players actually ended up after
+    other plugins had their say.
+
+    The index itself lives in LocalChatUtil; this listener
+    only tells it when a player's position has changed.
+ */
+public class LocationListener implements Listener {
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        LocalChatUtil.track(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        LocalChatUtil.untrack(event.getPlayer());
+    }
+
+    /*
+        Movement fires many times a second per player.
+
+        Only moves that reach a new block are recorded, which
+        is plenty of precision for a chat radius.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        if (!LocalChatUtil.isEnabled() || !event.hasChangedBlock()) return;
+        LocalChatUtil.track(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        LocalChatUtil.track(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        LocalChatUtil.track(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        LocalChatUtil.track(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+}
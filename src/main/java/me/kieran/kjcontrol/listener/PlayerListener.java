@@ -1,10 +1,22 @@
 package me.kieran.kjcontrol.listener;
 
-import me.kieran.kjcontrol.util.ConfigUtil;
+import me.kieran.kjcontrol.record.ChatLogEntry;
+import me.kieran.kjcontrol.util.ChatFormatUtil;
+import me.kieran.kjcontrol.util.ChatHistoryUtil;
+import me.kieran.kjcontrol.util.ChatHeaderCacheUtil;
+import me.kieran.kjcontrol.util.ChatLimitUtil;
+import me.kieran.kjcontrol.util.ChatLogUtil;
+import me.kieran.kjcontrol.util.JoinQuitUtil;
 import me.kieran.kjcontrol.util.MessagesUtil;
+import me.kieran.kjcontrol.util.PlaceholderCacheUtil;
+import me.kieran.kjcontrol.util.PlaceholderSnapshotUtil;
+import net.kyori.adventure.text.Component;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
@@ -19,6 +31,17 @@ import org.bukkit.event.player.PlayerQuitEvent;
  */
 public class PlayerListener implements Listener {
 
+    /*
+        The join/quit message this listener set on the event
+        currently being handled, or null.
+
+        Checked again at HIGHEST priority, so per-locale copies
+        are only sent if no other plugin has since removed or
+        replaced the message. Only touched on the main thread.
+     */
+    private Component joinMessage;
+    private Component quitMessage;
+
     /*
         Called when a player joins the server.
 
@@ -27,33 +50,168 @@ public class PlayerListener implements Listener {
      */
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+
+        /*
+            Take the player's first placeholder snapshot straight away,
+            so their first chat message already has values to read.
+
+            Join events run on the main thread, which is where
+            snapshots have to be taken.
+         */
+        PlaceholderSnapshotUtil.snapshot(player);
+
+        /*
+            Work out which chat format the player uses, so chatting
+            never has to check permissions.
+         */
+        ChatFormatUtil.selectFormat(player);
+        ChatLimitUtil.selectTier(player);
+
+        ChatLogUtil.logConnection(player, ChatLogEntry.Type.JOIN);
+
+        // Show the player what was said before they joined.
+        ChatHistoryUtil.replay(player);
 
         /*
             Exit early if:
             - Messages are disabled in the config
             - Join/Quit messages are disabled
          */
-        if (!ConfigUtil.messagesEnabled || MessagesUtil.isJoinQuitDisabled()) return;
-        Player player = event.getPlayer();
+        if (MessagesUtil.isJoinQuitDisabled()) return;
+
+        /*
+            Respect a join message another plugin has already
+            removed, e.g. a vanish plugin hiding this player.
+         */
+        if (event.joinMessage() == null) return;
+
+        /*
+            If lots of players are joining at once, this join is
+            held back and announced later as part of a summary,
+            so the message isn't even built.
+         */
+        if (JoinQuitUtil.bufferJoin(player)) {
+            event.joinMessage(null);
+            return;
+        }
 
         /*
             Replace the default join message with the
             custom formatted join message.
+
+            This is the messages.yml version. Players using a
+            locale file are sent their own copy by onJoinLocales.
          */
-        event.joinMessage(MessagesUtil.getJoinMessage(player));
+        joinMessage = MessagesUtil.getJoinMessage(player);
+        event.joinMessage(joinMessage);
+    }
+
+    /*
+        Sends the join message in each player's own language,
+        once every other plugin has had a chance to change it.
+
+        The server can only send the event's message to everyone,
+        so if any online player uses a locale file, the message is
+        taken off the event and sent to each player (and the
+        console) here instead. If the message was removed or
+        replaced by another plugin, it is left alone.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onJoinLocales(PlayerJoinEvent event) {
+        Component message = joinMessage;
+        joinMessage = null;
+
+        if (message == null || event.joinMessage() != message || !MessagesUtil.needsLocales(null)) return;
+
+        event.joinMessage(null);
+        MessagesUtil.broadcastJoinMessage(event.getPlayer(), message);
     }
 
     /*
         Called when a player leaves the server.
 
         Mirrors the join logic, applying a custom quit message
-        when join/quit messages are enabled.
+        when join/quit messages are enabled, and cleans up
+        any per-player data KJControl was holding.
      */
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        if (!ConfigUtil.messagesEnabled || MessagesUtil.isJoinQuitDisabled()) return;
         Player player = event.getPlayer();
-        event.quitMessage(MessagesUtil.getQuitMessage(player));
+
+        /*
+            Drop the player's cached placeholder values, snapshot
+            and chat header.
+
+            This runs before the message checks below, as the
+            cache must be cleared whether or not messages are enabled.
+         */
+        PlaceholderCacheUtil.invalidate(player.getUniqueId());
+        PlaceholderSnapshotUtil.remove(player.getUniqueId());
+        ChatHeaderCacheUtil.invalidate(player.getUniqueId());
+        ChatFormatUtil.forgetFormat(player.getUniqueId());
+        ChatLimitUtil.forget(player.getUniqueId());
+        ChatLogUtil.logConnection(player, ChatLogEntry.Type.QUIT);
+
+        if (MessagesUtil.isJoinQuitDisabled()) return;
+
+        // Respect a quit message another plugin has already removed.
+        if (event.quitMessage() == null) return;
+
+        // Held back for a summary, like joins.
+        if (JoinQuitUtil.bufferQuit(player)) {
+            event.quitMessage(null);
+            return;
+        }
+
+        quitMessage = MessagesUtil.getQuitMessage(player);
+        event.quitMessage(quitMessage);
+    }
+
+    /*
+        Sends the quit message in each player's own language.
+
+        Mirrors onJoinLocales. The quitting player is skipped.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST)
+    public void onQuitLocales(PlayerQuitEvent event) {
+        Component message = quitMessage;
+        quitMessage = null;
+
+        Player player = event.getPlayer();
+        if (message == null || event.quitMessage() != message || !MessagesUtil.needsLocales(player)) return;
+
+        event.quitMessage(null);
+        MessagesUtil.broadcastQuitMessage(player, message);
+    }
+
+    /*
+        Called when the server resends a player's command list.
+
+        Permission plugins (e.g. LuckPerms) do this whenever a
+        player's permissions change, so it is a good moment to
+        check which chat format and limits they should now be using,
+        and to rebuild their chat header (e.g. for a new rank prefix).
+     */
+    @EventHandler
+    public void onCommandSend(PlayerCommandSendEvent event) {
+        ChatHeaderCacheUtil.invalidate(event.getPlayer().getUniqueId());
+        ChatFormatUtil.selectFormat(event.getPlayer());
+        ChatLimitUtil.selectTier(event.getPlayer());
+    }
+
+    /*
+        Called when a player moves to another world.
+
+        Permissions can be per-world, so the player's
+        chat format and limits are checked again, and
+        their chat header is rebuilt.
+     */
+    @EventHandler
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        ChatHeaderCacheUtil.invalidate(event.getPlayer().getUniqueId());
+        ChatFormatUtil.selectFormat(event.getPlayer());
+        ChatLimitUtil.selectTier(event.getPlayer());
     }
 
 }
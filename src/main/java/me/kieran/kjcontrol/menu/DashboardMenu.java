@@ -0,0 +1,155 @@
+package me.kieran.kjcontrol.menu;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.MetricsSample;
+import me.kieran.kjcontrol.record.TimingSample;
+import me.kieran.kjcontrol.util.MenuUtil;
+import me.kieran.kjcontrol.util.MetricsUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/*
+    A menu showing KJControl's own live performance metrics.
+
+    Every open dashboard is refreshed by one shared task, once a
+    second, from a single MetricsUtil sample. Each refresh only
+    re-sets the items whose text actually changed, so an idle
+    dashboard costs a handful of string comparisons per second.
+
+    The task only runs while at least one dashboard is open.
+ */
+public class DashboardMenu extends Menu {
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // The slot each metric is shown in.
+    private static final int CHAT_SLOT = 10;
+    private static final int RENDER_SLOT = 11;
+    private static final int PLACEHOLDER_SLOT = 12;
+    private static final int PLACEHOLDER_CACHE_SLOT = 14;
+    private static final int HEADER_CACHE_SLOT = 15;
+    private static final int RELOAD_SLOT = 16;
+
+    /*
+        Every dashboard that is currently open, and the task refreshing them.
+
+        Only touched from the main thread.
+     */
+    private static final Set<DashboardMenu> open = new HashSet<>();
+    private static BukkitTask task;
+
+    /*
+        The text last shown in each slot, indexed by slot number.
+
+        A metric is only re-set when its new text differs from this.
+     */
+    private final String[] shown;
+
+    public DashboardMenu() {
+        super(27, Component.text("KJControl Performance"));
+        shown = new String[inventory.getSize()];
+
+        show(null);
+        open.add(this);
+
+        /*
+            Start refreshing when the first dashboard opens.
+
+            Sampling once now throws away everything counted while
+            no dashboard was open, so the first refresh shows the
+            last second rather than an average since then.
+         */
+        if (task == null) {
+            MetricsUtil.sample();
+            task = Bukkit.getScheduler().runTaskTimer(KJControl.getInstance(), DashboardMenu::refresh, 20L, 20L);
+        }
+    }
+
+    /*
+        Takes one sample and shows it on every open dashboard.
+
+        Dashboards nobody is looking at any more are dropped
+        first, and the task stops once none are left.
+     */
+    private static void refresh() {
+        open.removeIf(menu -> menu.inventory.getViewers().isEmpty());
+
+        if (open.isEmpty()) {
+            task.cancel();
+            task = null;
+            return;
+        }
+
+        MetricsSample sample = MetricsUtil.sample();
+        for (DashboardMenu menu : open) menu.show(sample);
+    }
+
+    /*
+        Shows a sample, or "waiting" text if there is none yet.
+     */
+    private void show(MetricsSample sample) {
+        if (sample == null) {
+            String waiting = "Measuring...";
+            update(CHAT_SLOT, Material.WRITABLE_BOOK, "Chat messages", waiting);
+            update(RENDER_SLOT, Material.CLOCK, "Chat format render time", waiting);
+            update(PLACEHOLDER_SLOT, Material.NAME_TAG, "PlaceholderAPI time", waiting);
+            update(PLACEHOLDER_CACHE_SLOT, Material.CHEST, "Placeholder cache", waiting);
+            update(HEADER_CACHE_SLOT, Material.ENDER_CHEST, "Chat header cache", waiting);
+            update(RELOAD_SLOT, Material.EMERALD, "Last reload", waiting);
+            return;
+        }
+
+        update(CHAT_SLOT, Material.WRITABLE_BOOK, "Chat messages",
+                String.format(Locale.ROOT, "%.1f per second", sample.chatPerSecond()));
+        update(RENDER_SLOT, Material.CLOCK, "Chat format render time", timing(sample.render()));
+        update(PLACEHOLDER_SLOT, Material.NAME_TAG, "PlaceholderAPI time", timing(sample.placeholders()));
+        update(PLACEHOLDER_CACHE_SLOT, Material.CHEST, "Placeholder cache",
+                hitRate(sample.placeholderHits(), sample.placeholderMisses()));
+        update(HEADER_CACHE_SLOT, Material.ENDER_CHEST, "Chat header cache",
+                hitRate(sample.headerHits(), sample.headerMisses()));
+        update(RELOAD_SLOT, Material.EMERALD, "Last reload",
+                sample.lastReload() == 0 ? "Never" : TIME_FORMAT.format(Instant.ofEpochMilli(sample.lastReload())));
+    }
+
+    /*
+        Sets a metric's item, unless it already shows this text.
+     */
+    private void update(int slot, Material material, String name, String value) {
+        if (value.equals(shown[slot])) return;
+        shown[slot] = value;
+
+        inventory.setItem(slot, MenuUtil.createBlock(
+                material,
+                Component.text(name, NamedTextColor.AQUA),
+                List.of(Component.text(value, NamedTextColor.GRAY)),
+                false,
+                null
+        ));
+    }
+
+    private static String timing(TimingSample sample) {
+        if (sample.count() == 0) return "Idle";
+
+        return String.format(Locale.ROOT, "avg %.3f ms, p99 %.3f ms (%d calls)",
+                sample.averageNanos() / 1_000_000.0, sample.p99Nanos() / 1_000_000.0, sample.count());
+    }
+
+    private static String hitRate(long hits, long misses) {
+        long total = hits + misses;
+        if (total == 0) return "Idle";
+
+        return String.format(Locale.ROOT, "%.1f%% hits (%d of %d)", hits * 100.0 / total, hits, total);
+    }
+}
@@ -1,12 +1,7 @@
 package me.kieran.kjcontrol.menu;
 
-import me.kieran.kjcontrol.KJControl;
 import me.kieran.kjcontrol.util.MenuUtil;
 import net.kyori.adventure.text.Component;
-import org.bukkit.inventory.Inventory;
-import org.bukkit.inventory.InventoryHolder;
-
-import org.jetbrains.annotations.NotNull;
 
 /*
     Represents the main graphical menu (GUI) for the KJControl plugin.
@@ -14,28 +9,17 @@ import org.jetbrains.annotations.NotNull;
     This class:
     - Creates a custom inventory
     - Defines which items appear in specific slots
-    - Acts as the InventoryHolder so interactions can be identified
 
     The menu itself contains no click-handling logic;
-    it only defines layout and contents.
+    each item carries its own action tag, which Menu
+    looks up in MenuRegistry when it is clicked.
  */
-public class KJControlMenu implements InventoryHolder {
-
-    /*
-        The Inventory backing this menu.
-
-        Stored as a field so it can be returned later
-        when the menu is opened for a player.
-     */
-    private final Inventory menu;
+public class KJControlMenu extends Menu {
 
     /*
         Constructs the KJControl menu.
-
-        @param plugin The main plugin instance, used to
-                      access the server and create inventories.
      */
-    public KJControlMenu(KJControl plugin) {
+    public KJControlMenu() {
 
         /*
             Create a new inventory with:
@@ -43,29 +27,19 @@ public class KJControlMenu implements InventoryHolder {
             - 9 slots (a single row)
             - A custom title shown at the top of the GUI
          */
-        menu = plugin.getServer().createInventory(this, 9, Component.text("KJControl Menu"));
+        super(9, Component.text("KJControl Menu"));
 
         /*
             Slot items are zero-based:
             - Slot 0 is the far-left
             - Slot 8 is the far-right
 
-            Place the "Reload" menu item into slot 1
-            and the "preview" item into slot 3
+            Place the "Reload" menu item into slot 1,
+            the "preview" item into slot 3
+            and the "performance" item into slot 5
          */
-        menu.setItem(1, MenuUtil.getReloadBlock());
-        menu.setItem(3, MenuUtil.getPreviewFormatBlock());
-    }
-
-    /*
-        Required method from InventoryHolder interface.
-
-        This allows Bukkit/Paper to associate this Inventory
-        with this specific menu instance, which is useful
-        for identifying it in InventoryClickEvent handlers.
-     */
-    @Override
-    public @NotNull Inventory getInventory() {
-        return menu;
+        inventory.setItem(1, MenuUtil.getReloadBlock());
+        inventory.setItem(3, MenuUtil.getPreviewFormatBlock());
+        inventory.setItem(5, MenuUtil.getDashboardBlock());
     }
 }
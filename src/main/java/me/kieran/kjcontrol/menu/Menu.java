@@ -0,0 +1,93 @@
+package me.kieran.kjcontrol.menu;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.ItemStack;
+
+import org.jetbrains.annotations.NotNull;
+
+/*
+    Base class for every KJControl menu.
+
+    A menu owns its inventory and decides what each click does.
+    InventoryListener only has to check whether the inventory
+    belongs to a Menu, then hands the click over.
+
+    A click is looked up in two places:
+    1. The action attached to the slot, if any (an array lookup)
+    2. The action tag on the clicked item (see MenuRegistry)
+
+    So a button can be tied to a position (e.g. "next page"),
+    or carry its action with it wherever it is placed.
+ */
+public abstract class Menu implements InventoryHolder {
+
+    // The Inventory backing this menu.
+    protected final Inventory inventory;
+
+    /*
+        The action for each slot, indexed by slot number.
+
+        Most slots have none (null).
+     */
+    private final MenuAction[] slotActions;
+
+    /*
+        @param size  The number of slots (a multiple of 9)
+        @param title The title shown at the top of the menu
+     */
+    protected Menu(int size, Component title) {
+        inventory = Bukkit.createInventory(this, size, title);
+        slotActions = new MenuAction[size];
+    }
+
+    /*
+        Places an item in a slot and ties an action to that slot.
+
+        Passing a null action leaves the slot to the item's own
+        action tag, if it has one.
+     */
+    protected void setButton(int slot, ItemStack item, MenuAction action) {
+        inventory.setItem(slot, item);
+        slotActions[slot] = action;
+    }
+
+    /*
+        Empties a slot and removes its action.
+     */
+    protected void clearButton(int slot) {
+        inventory.setItem(slot, null);
+        slotActions[slot] = null;
+    }
+
+    /*
+        Handles a click inside this menu's own inventory.
+
+        The event has already been cancelled by InventoryListener,
+        so nothing can be moved in or out of the menu.
+     */
+    public void handleClick(InventoryClickEvent event) {
+        int slot = event.getSlot();
+        if (slot < 0 || slot >= slotActions.length) return;
+
+        MenuAction action = slotActions[slot];
+        if (action == null) action = MenuRegistry.get(event.getCurrentItem());
+
+        if (action != null) action.run(event.getWhoClicked());
+    }
+
+    /*
+        Required method from InventoryHolder interface.
+
+        This allows Bukkit/Paper to associate this Inventory
+        with this specific menu instance, which is how
+        InventoryListener recognises KJControl menus.
+     */
+    @Override
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+}
@@ -0,0 +1,43 @@
+package me.kieran.kjcontrol.menu;
+
+import me.kieran.kjcontrol.util.MessagesUtil;
+import org.bukkit.entity.HumanEntity;
+
+/*
+    Something that happens when a menu button is clicked.
+
+    Actions are attached to buttons either by slot (see Menu)
+    or by an action tag stored on the item itself (see MenuRegistry).
+ */
+@FunctionalInterface
+public interface MenuAction {
+
+    void run(HumanEntity clicker);
+
+    /*
+        Wraps an action so it only runs for players with a permission.
+
+        Anyone else is told which permission they are missing.
+     */
+    static MenuAction requiring(String permission, MenuAction action) {
+        return clicker -> {
+            if (!clicker.hasPermission(permission)) {
+                clicker.sendMessage(MessagesUtil.noPermissionMessage(permission));
+                return;
+            }
+            action.run(clicker);
+        };
+    }
+
+    /*
+        Wraps an action so the menu is closed once it has run.
+
+        This gives immediate feedback and prevents repeated clicks.
+     */
+    static MenuAction closing(MenuAction action) {
+        return clicker -> {
+            action.run(clicker);
+            clicker.closeInventory();
+        };
+    }
+}
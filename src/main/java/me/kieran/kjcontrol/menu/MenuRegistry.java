@@ -0,0 +1,85 @@
+package me.kieran.kjcontrol.menu;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.util.ChatFormatUtil;
+import me.kieran.kjcontrol.util.ConfigUtil;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Maps action names to the code they run.
+
+    A menu item can carry an action name in its
+    PersistentDataContainer (under ACTION_KEY), so the item
+    itself says what it does - wherever it is placed, and
+    without relying on its material or position.
+
+    Only used from the main thread.
+ */
+public final class MenuRegistry {
+
+    /*
+        The key an item's action name is stored under.
+     */
+    public static final NamespacedKey ACTION_KEY = new NamespacedKey("kjcontrol", "action");
+
+    // Action names used by the built-in menu items.
+    public static final String RELOAD = "reload";
+    public static final String PREVIEW_FORMAT = "preview_format";
+    public static final String DASHBOARD = "dashboard";
+
+    private static final Map<String, MenuAction> actions = new HashMap<>();
+
+    /*
+        The built-in actions.
+     */
+    static {
+        register(RELOAD, MenuAction.closing(MenuAction.requiring(
+                "kjcontrol.reload", ConfigUtil::load
+        )));
+
+        register(PREVIEW_FORMAT, MenuAction.closing(MenuAction.requiring(
+                "kjcontrol.preview", clicker -> clicker.sendMessage(
+                        ChatFormatUtil.getFormat(clicker, Component.text("Only you can see this preview!"))
+                )
+        )));
+
+        /*
+            Opening another inventory from inside a click event
+            isn't safe, so the dashboard is opened on the next tick.
+         */
+        register(DASHBOARD, MenuAction.requiring(
+                "kjcontrol.metrics", clicker -> Bukkit.getScheduler().runTask(
+                        KJControl.getInstance(), () -> clicker.openInventory(new DashboardMenu().getInventory())
+                )
+        ));
+    }
+
+    /*
+        Registers (or replaces) the action for a name.
+     */
+    public static void register(String name, MenuAction action) {
+        actions.put(name, action);
+    }
+
+    /*
+        Returns the action an item is tagged with,
+        or null if it has no (known) action.
+
+        Reads the item's data directly instead of copying
+        its ItemMeta, so untagged items cost almost nothing.
+     */
+    public static MenuAction get(ItemStack item) {
+        if (item == null || item.isEmpty()) return null;
+
+        String name = item.getPersistentDataContainer().get(ACTION_KEY, PersistentDataType.STRING);
+        return name == null ? null : actions.get(name);
+    }
+
+}
@@ -0,0 +1,165 @@
+package me.kieran.kjcontrol.menu;
+
+import me.kieran.kjcontrol.record.ChatHistoryEntry;
+import me.kieran.kjcontrol.record.CompiledChatFormat;
+import me.kieran.kjcontrol.record.LoadedChatFormats;
+import me.kieran.kjcontrol.record.MenuEntry;
+import me.kieran.kjcontrol.record.RankedChatFormat;
+import me.kieran.kjcontrol.util.ChatFormatUtil;
+import me.kieran.kjcontrol.util.ChatHistoryUtil;
+import me.kieran.kjcontrol.util.ConfigUtil;
+import me.kieran.kjcontrol.util.ResolveUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/*
+    The things a config-defined menu can list.
+
+    Each source turns the current state of the server into a list
+    of MenuEntry objects, one per item. This is called on the main
+    thread when a menu opens, so it only gathers references -
+    anything expensive is left to lazy tags, which are only
+    resolved for the page being shown.
+
+    The tags each source provides are listed in menus.yml.
+ */
+public enum MenuSource {
+
+    /*
+        Every online player, sorted by name.
+     */
+    ONLINE_PLAYERS("online-players") {
+        @Override
+        public List<MenuEntry> entries(Player viewer) {
+            LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+
+            List<Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
+            players.sort(Comparator.comparing(Player::getName, String.CASE_INSENSITIVE_ORDER));
+
+            List<MenuEntry> entries = new ArrayList<>(players.size());
+            for (Player player : players) {
+                /*
+                    The world and format name are read now, on the main
+                    thread, as lore may be rendered in the background.
+                    Both are cheap, so they cost little even for entries
+                    on pages nobody looks at.
+
+                    The format preview stays lazy, and is left empty if
+                    the player has left by the time the lore is built.
+                 */
+                entries.add(new MenuEntry(player, TagResolver.resolver(
+                        ResolveUtil.playerResolver(player),
+                        Placeholder.unparsed("world", player.getWorld().getName()),
+                        Placeholder.unparsed("format_name",
+                                formats == null ? "none" : formats.nameOf(formats.formatFor(player))),
+                        TagResolver.resolver("format", (args, context) -> Tag.selfClosingInserting(
+                                player.isOnline() ? ChatFormatUtil.getFormat(player, PREVIEW_MESSAGE) : Component.empty()
+                        ))
+                )));
+            }
+            return entries;
+        }
+    },
+
+    /*
+        Every loaded chat format, highest priority first,
+        then the default format. Previews are shown as the
+        player viewing the menu.
+     */
+    CHAT_FORMATS("chat-formats") {
+        @Override
+        public List<MenuEntry> entries(Player viewer) {
+            LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+            if (formats == null) return List.of();
+
+            List<MenuEntry> entries = new ArrayList<>(formats.rankedFormats().size() + 1);
+            for (RankedChatFormat ranked : formats.rankedFormats()) {
+                entries.add(formatEntry(
+                        viewer, ranked.format(), ranked.name(), String.valueOf(ranked.priority()), ranked.permission()
+                ));
+            }
+            entries.add(formatEntry(viewer, formats.defaultFormat(), "default", "-", "none"));
+            return entries;
+        }
+    },
+
+    /*
+        Recent chat from the chat history, newest first.
+     */
+    CHAT_HISTORY("chat-history") {
+        @Override
+        public List<MenuEntry> entries(Player viewer) {
+            List<ChatHistoryEntry> history = ChatHistoryUtil.getRecent(Integer.MAX_VALUE, false);
+
+            List<MenuEntry> entries = new ArrayList<>(history.size());
+            for (int i = history.size() - 1; i >= 0; i--) {
+                ChatHistoryEntry entry = history.get(i);
+                entries.add(new MenuEntry(Bukkit.getPlayer(entry.sender()), TagResolver.resolver(
+                        Placeholder.unparsed("sender", entry.senderName()),
+                        Placeholder.unparsed("message", entry.message()),
+                        Placeholder.unparsed("time", TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp()))),
+                        Placeholder.unparsed("scope", entry.global() ? "global" : "local")
+                )));
+            }
+            return entries;
+        }
+    };
+
+    // The message shown in chat format previews.
+    private static final Component PREVIEW_MESSAGE = Component.text("Hello!");
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // The name used for this source in menus.yml.
+    private final String key;
+
+    MenuSource(String key) {
+        this.key = key;
+    }
+
+    /*
+        Gathers the entries to list, in order.
+
+        @param viewer The player opening the menu
+     */
+    public abstract List<MenuEntry> entries(Player viewer);
+
+    /*
+        Returns the source with the given menus.yml name,
+        or null if there is none.
+     */
+    public static MenuSource fromKey(String key) {
+        if (key == null) return null;
+
+        String lower = key.toLowerCase(Locale.ROOT);
+        for (MenuSource source : values()) {
+            if (source.key.equals(lower)) return source;
+        }
+        return null;
+    }
+
+    private static MenuEntry formatEntry(
+            Player viewer, CompiledChatFormat format, String name, String priority, String permission
+    ) {
+        return new MenuEntry(null, TagResolver.resolver(
+                Placeholder.unparsed("name", name),
+                Placeholder.unparsed("priority", priority),
+                Placeholder.unparsed("permission", permission),
+                TagResolver.resolver("preview", (args, context) ->
+                        Tag.selfClosingInserting(ChatFormatUtil.getFormat(format, viewer, PREVIEW_MESSAGE)))
+        ));
+    }
+}
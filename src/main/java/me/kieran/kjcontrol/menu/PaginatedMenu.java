@@ -0,0 +1,277 @@
+package me.kieran.kjcontrol.menu;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.MenuDefinition;
+import me.kieran.kjcontrol.record.MenuEntry;
+import me.kieran.kjcontrol.record.MenuItemDefinition;
+import me.kieran.kjcontrol.util.MenuUtil;
+import me.kieran.kjcontrol.util.ResolveUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.SkullMeta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/*
+    A menu defined in menus.yml that lists entries across pages.
+
+    The bottom row holds the navigation buttons, and every other
+    slot shows one entry. Only the page being looked at is ever
+    built, so a menu listing hundreds of players costs the same
+    to open as one listing nine.
+
+    Each page is built in three steps:
+    1. On the main thread, every entry gets its item straight away,
+       with its name and a "loading" line as its lore
+    2. Any PlaceholderAPI placeholders in the lore are resolved on
+       the main thread, a few entries per tick
+    3. The lore is parsed in the background, then filled in
+       on the main thread
+
+    If the page is changed or the menu is closed before the lore is
+    ready, the finished lore is simply thrown away.
+ */
+public class PaginatedMenu extends Menu {
+
+    // How many entries have their placeholders resolved each tick.
+    private static final int ENTRIES_PER_TICK = 9;
+
+    private final MenuDefinition definition;
+
+    /*
+        Every entry this menu lists, gathered when it was opened.
+     */
+    private final List<MenuEntry> entries;
+
+    // The number of entry slots on each page (every row but the last).
+    private final int pageSize;
+
+    // The page being shown, starting at 0.
+    private int page;
+
+    /*
+        Goes up every time a page is shown, so lore built
+        for an earlier page can tell it is no longer wanted.
+     */
+    private int generation;
+
+    /*
+        @param definition The menu from menus.yml
+        @param viewer     The player opening the menu
+     */
+    public PaginatedMenu(MenuDefinition definition, Player viewer) {
+        super(definition.rows() * 9, definition.title());
+
+        this.definition = definition;
+        this.entries = definition.source().entries(viewer);
+        this.pageSize = inventory.getSize() - 9;
+
+        showPage(0);
+    }
+
+    /*
+        Returns the number of pages, which is at least 1
+        even if there is nothing to list.
+     */
+    public int getPages() {
+        return Math.max(1, (entries.size() + pageSize - 1) / pageSize);
+    }
+
+    /*
+        Shows a page, replacing whatever was shown before.
+     */
+    private void showPage(int page) {
+        this.page = page;
+        int generation = ++this.generation;
+
+        int from = page * pageSize;
+        List<MenuEntry> visible = entries.subList(from, Math.min(entries.size(), from + pageSize));
+
+        /*
+            Step 1: every visible entry gets its item now.
+
+            The items are kept, so the lore can be added to these
+            same items later instead of building them again.
+         */
+        ItemStack[] items = new ItemStack[visible.size()];
+        for (int i = 0; i < items.length; i++) items[i] = createItem(visible.get(i));
+
+        for (int slot = 0; slot < pageSize; slot++)
+            inventory.setItem(slot, slot < items.length ? items[slot] : null);
+
+        updateNavigation();
+
+        if (items.length == 0 || definition.item().lore().isEmpty()) return;
+
+        KJControl plugin = KJControl.getInstance();
+        List<String> placeholders = definition.item().loreAnalysis().standardPlaceholders();
+
+        if (placeholders.isEmpty()) {
+            buildLore(generation, visible, items, null);
+            return;
+        }
+
+        /*
+            Step 2: resolve the lore's placeholders on the main thread.
+
+            PlaceholderAPI expansions aren't safe to call off the main
+            thread, so only this part runs here. It is spread over a
+            few ticks, so a full page of players doesn't stall one.
+            Values still go through the placeholder cache and snapshots.
+         */
+        List<Map<String, String>> values = new ArrayList<>(visible.size());
+        Bukkit.getScheduler().runTaskTimer(plugin, task -> {
+            if (generation != this.generation || inventory.getViewers().isEmpty()) {
+                task.cancel();
+                return;
+            }
+
+            int end = Math.min(visible.size(), values.size() + ENTRIES_PER_TICK);
+            for (int i = values.size(); i < end; i++) values.add(resolveLore(visible.get(i), placeholders));
+
+            if (values.size() < visible.size()) return;
+
+            task.cancel();
+            buildLore(generation, visible, items, values);
+        }, 0L, 1L);
+    }
+
+    /*
+        Step 3: parse the lore away from the main thread,
+        then hand it back to fill in the page's items.
+
+        @param values The resolved placeholders for each entry,
+                      or null if the lore has none
+     */
+    private void buildLore(int generation, List<MenuEntry> visible, ItemStack[] items, List<Map<String, String>> values) {
+        KJControl plugin = KJControl.getInstance();
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<List<Component>> lore = new ArrayList<>(visible.size());
+            for (int i = 0; i < visible.size(); i++)
+                lore.add(renderLore(visible.get(i), values == null ? Map.of() : values.get(i)));
+
+            Bukkit.getScheduler().runTask(plugin, () -> fillLore(generation, items, lore));
+        });
+    }
+
+    /*
+        Places the previous/next page buttons in the bottom row,
+        or clears them on the first/last page.
+     */
+    private void updateNavigation() {
+        int first = pageSize;
+        int last = pageSize + 8;
+
+        TagResolver pageTags = TagResolver.resolver(
+                Placeholder.unparsed("page", String.valueOf(page + 1)),
+                Placeholder.unparsed("pages", String.valueOf(getPages()))
+        );
+
+        if (page > 0) {
+            setButton(first, createButton(definition.previousPage(), pageTags), clicker -> showPage(page - 1));
+        } else {
+            clearButton(first);
+        }
+
+        if (page < getPages() - 1) {
+            setButton(last, createButton(definition.nextPage(), pageTags), clicker -> showPage(page + 1));
+        } else {
+            clearButton(last);
+        }
+    }
+
+    /*
+        Adds the finished lore to a page's items, if that
+        page is still the one being shown.
+     */
+    private void fillLore(int generation, ItemStack[] items, List<List<Component>> lore) {
+        if (generation != this.generation || inventory.getViewers().isEmpty()) return;
+
+        for (int i = 0; i < items.length; i++) {
+            List<Component> lines = lore.get(i);
+            items[i].editMeta(meta -> meta.lore(lines));
+            inventory.setItem(i, items[i]);
+        }
+    }
+
+    /*
+        Creates an entry's item, with the loading line as its lore.
+
+        Only the name is rendered here, and PlaceholderAPI is not
+        used for it, so this stays cheap on the main thread as long
+        as the name sticks to the tags menus.yml allows in names.
+     */
+    private ItemStack createItem(MenuEntry entry) {
+        MenuItemDefinition item = definition.item();
+
+        ItemStack stack = MenuUtil.createBlock(
+                item.material(),
+                ResolveUtil.serializer().deserialize(item.name(), entry.tags()),
+                item.lore().isEmpty() ? List.of() : List.of(definition.loading()),
+                false,
+                null
+        );
+
+        // Show the player's own head for entries about a player.
+        if (item.material() == Material.PLAYER_HEAD && entry.player() != null) {
+            stack.editMeta(SkullMeta.class, meta -> meta.setPlayerProfile(entry.player().getPlayerProfile()));
+        }
+
+        return stack;
+    }
+
+    /*
+        Resolves the lore's placeholders for an entry's player.
+
+        MUST be called on the main thread. Entries without an
+        online player get no values, so their placeholders are
+        left as written.
+     */
+    private static Map<String, String> resolveLore(MenuEntry entry, List<String> placeholders) {
+        Player player = entry.player();
+        if (player == null || !player.isOnline()) return Map.of();
+
+        Map<String, String> values = new HashMap<>(placeholders.size());
+        for (String placeholder : placeholders)
+            values.put(placeholder, ResolveUtil.resolvePlaceholder(player, placeholder));
+        return values;
+    }
+
+    /*
+        Builds an entry's lore from its already resolved placeholders.
+
+        Nothing here calls PlaceholderAPI, so this is
+        safe to run off the main thread.
+     */
+    private List<Component> renderLore(MenuEntry entry, Map<String, String> values) {
+        List<Component> lines = new ArrayList<>(definition.item().lore().size());
+        for (String line : definition.item().lore()) {
+            if (!values.isEmpty() && line.indexOf('%') >= 0) {
+                Matcher matcher = ResolveUtil.PLACEHOLDER_PATTERN.matcher(line);
+                line = matcher.replaceAll(match -> Matcher.quoteReplacement(values.getOrDefault(match.group(), match.group())));
+            }
+            lines.add(ResolveUtil.serializer().deserialize(line, entry.tags()));
+        }
+        return lines;
+    }
+
+    private static ItemStack createButton(MenuItemDefinition button, TagResolver tags) {
+        return MenuUtil.createBlock(
+                button.material(),
+                ResolveUtil.serializer().deserialize(button.name(), tags),
+                List.of(),
+                false,
+                null
+        );
+    }
+}
@@ -0,0 +1,32 @@
+package me.kieran.kjcontrol.record;
+
+import net.kyori.adventure.text.Component;
+
+/*
+    Represents a ChatHeader held in the per-player header cache,
+    along with everything it was built from.
+
+    A cached header can be reused only while:
+    - format      -> is still the exact compiled format it was built with
+    - displayName -> still matches the player's display name
+    - builtAt/ttl -> it is younger than its TTL (in nanoseconds), so
+                     its placeholder values are never older than the
+                     placeholder cache would allow
+
+    None of these checks call PlaceholderAPI, so a cache hit
+    costs a comparison and a clock read.
+ */
+public record CachedChatHeader(
+        CompiledChatFormat format,
+        Component displayName,
+        long builtAt,
+        long ttl,
+        ChatHeader header
+) {
+    /*
+        Returns true if this header is still fresh at the given time.
+     */
+    public boolean isValid(long now) {
+        return now - builtAt < ttl;
+    }
+}
@@ -0,0 +1,21 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents a single PlaceholderAPI value held in the
+    per-player placeholder cache.
+
+    - value     -> the resolved placeholder text
+    - expiresAt -> the System.nanoTime() after which the
+                   value must be resolved again
+ */
+public record CachedPlaceholder(
+        String value,
+        long expiresAt
+) {
+    /*
+        Returns true if this value is still fresh at the given time.
+     */
+    public boolean isValid(long now) {
+        return now - expiresAt < 0;
+    }
+}
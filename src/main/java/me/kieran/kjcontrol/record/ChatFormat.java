@@ -1,12 +1,6 @@
 package me.kieran.kjcontrol.record;
 
-import me.kieran.kjcontrol.util.ResolveUtil;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.event.ClickEvent;
-import net.kyori.adventure.text.event.HoverEvent;
-import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
-import org.bukkit.entity.Player;
+import me.kieran.kjcontrol.util.TemplateUtil;
 
 import java.util.List;
 
@@ -17,16 +11,32 @@ import java.util.List;
     - It stores strings, not Components
     - It is immutable (because it's a record)
     - It does no rendering by itself
-    - Rendering is delegated to resolve() which produces
-      a ResolvedChatFormat
+    - It is compiled once into a CompiledChatFormat, which
+      does the per-message rendering
  */
 public record ChatFormat(
         String prefix,
         String name,
         String hoverName,
         String clickName,
-        String suffix
+        String suffix,
+        MessageMode messageMode
 ) {
+    /*
+        How the player's message is added after the suffix.
+
+        - LEGACY    -> the message is turned into plain text and parsed
+                       with PlaceholderAPI and MiniMessage, as if it were
+                       part of the suffix string
+        - COMPONENT -> the original message Component is kept as-is and
+                       given the style the suffix ends with. Player text is
+                       never parsed, so it can't inject tags or placeholders.
+     */
+    public enum MessageMode {
+        LEGACY,
+        COMPONENT
+    }
+
     /*
         Checks whether this ChatFormat is invalid.
 
@@ -42,116 +52,53 @@ public record ChatFormat(
                 || name == null
                 || hoverName == null
                 || clickName == null
-                || suffix == null;
+                || suffix == null
+                || messageMode == null;
     }
 
     /*
-        Resolves this ChatFormat into a fully-rendered format
-        for a specific player and message.
-
-        This method:
-        1. Applies PlaceholderAPI placeholders
-        2. Deserializes MiniMessage tags
-        3. Builds interactive components (hover / click)
-        4. Returns a ResolvedChatFormat ready to display
-     */
-    public ResolvedChatFormat resolve(Player player, Component message) {
+        Compiles this ChatFormat into templates.
 
-        /*
-            Combine the suffix and the chat message into a single string.
+        Every part of the format is parsed by MiniMessage once,
+        here, rather than on every chat message.
 
-            This is intentional:
-            - MiniMessage styles persist forward
-            - Appending the message later would lose the suffix colour
+        In LEGACY mode the suffix gets a slot at the end for the
+        message body, so the message inherits any styles the suffix
+        leaves open. In COMPONENT mode the style the suffix ends with
+        is worked out now, and applied to the message directly.
 
-            The message Component is converted to plain text
-            so it can be safely re-serializes by MiniMessage.
-         */
-        String suffixMessage = suffix + PlainTextComponentSerializer.plainText().serialize(message);
-
-        /*
-            Apply PlaceholderAPI placeholders to all format parts.
-
-            Order matters here:
-            0 - prefix
-            1 - name
-            2 - hoverName
-            3 - clickName
-            4 - suffix + message
-         */
-        List<String> resolvedPlaceholders = ResolveUtil.applyPlaceholders(
-                player, prefix, name, hoverName, clickName, suffixMessage
+        This should be called once when chat-format.yml is
+        loaded, not per message.
+     */
+    public CompiledChatFormat compile() {
+        boolean componentMessages = messageMode == MessageMode.COMPONENT;
+
+        List<Template> templates = List.of(
+                TemplateUtil.compile(prefix),
+                TemplateUtil.compile(name),
+                TemplateUtil.compile(hoverName),
+                TemplateUtil.compile(clickName),
+                TemplateUtil.compile(suffix, !componentMessages)
         );
 
         /*
-            Create a MiniMessage serializer configured for this player.
-
-            This serializer understands:
-            - Standard MiniMessage tags
-            - <username> and <displayname>
-         */
-        MiniMessage serializer = ResolveUtil.getSerializer(player);
-
-        /*
-            Convert each resolved string into an Adventure Component.
-
-            Using an array here allows us to reference components
-            by index in a predictable, structured way.
-         */
-        Component[] components = new Component[resolvedPlaceholders.size()];
-
-        /*
-            Deserialize every resolved placeholder string
-            into a MiniMessage Component
-         */
-        for (int i = 0; i < resolvedPlaceholders.size(); i++)
-            components[i] = serializer.deserialize(resolvedPlaceholders.get(i));
-
-        /*
-            Start building the "name" component.
-
-            This is separated because it may gain hover
-            and click interactions.
-         */
-        Component name = components[1];
-
-        /*
-            Only add a hover event if hoverName is not empty.
-
-            This allows server owners to disable hover text
-            simply by leaving the config value blank.
-         */
-        if (!hoverName.isEmpty())
-            name = name.hoverEvent(
-                    HoverEvent.showText(components[2])
-            );
-
-        /*
-            Only add a click event if clickName is not empty.
-
-            The click action runs a command, so the component
-            must be converted to plan text before use.
-         */
-        if (!clickName.isEmpty())
-            name = name.clickEvent(
-                    ClickEvent.runCommand(
-                            PlainTextComponentSerializer.plainText().serialize(components[3])
-                    )
-            );
-
-        /*
-            Return a fully resolved chat format:
-            - prefix component
-            - interactive name component
-            - suffix + message component
-
-            This object is now safe to append directly
-            in the chat renderer.
+            Collect the placeholders the header depends on, so the
+            header cache can tell when a player's values change.
          */
-        return new ResolvedChatFormat(
-                components[0],
-                name,
-                components[4]
+        List<String> headerPlaceholders = templates.subList(0, CompiledChatFormat.HEADER_SIZE).stream()
+                .flatMap(template -> template.analysis().standardPlaceholders().stream())
+                .distinct()
+                .toList();
+
+        return new CompiledChatFormat(
+                this,
+                templates.get(0),
+                templates.get(1),
+                templates.get(2),
+                templates.get(3),
+                templates.get(4),
+                headerPlaceholders,
+                componentMessages ? TemplateUtil.trailingStyle(suffix) : null
         );
     }
 }
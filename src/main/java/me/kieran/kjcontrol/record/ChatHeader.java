@@ -0,0 +1,20 @@
+package me.kieran.kjcontrol.record;
+
+import net.kyori.adventure.text.Component;
+
+/*
+    Represents the part of a chat line that comes before
+    the suffix and message.
+
+    - prefix -> the rendered prefix
+    - name   -> the rendered name, with its hover and
+                click events already attached
+
+    The header depends only on the sender and the loaded
+    format, never on what was typed, so it can be built
+    once and reused for many messages.
+ */
+public record ChatHeader(
+        Component prefix,
+        Component name
+) {}
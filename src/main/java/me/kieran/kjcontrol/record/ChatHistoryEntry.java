@@ -0,0 +1,26 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.UUID;
+
+/*
+    Represents a single line of chat held in the chat history.
+
+    Only the plain text is kept, not the rendered Component,
+    so every entry costs roughly the same small amount of memory.
+    The full format is rendered again if the line is replayed.
+
+    - sender        -> the UUID of the player who sent the message
+    - senderName    -> their name, for when they are no longer online
+    - timestamp     -> the System.currentTimeMillis() the message was sent at
+    - message       -> the plain text of the message
+    - formatVersion -> the chat format load this message was sent under
+    - global        -> false if only nearby players saw the message (local chat)
+ */
+public record ChatHistoryEntry(
+        UUID sender,
+        String senderName,
+        long timestamp,
+        String message,
+        int formatVersion,
+        boolean global
+) {}
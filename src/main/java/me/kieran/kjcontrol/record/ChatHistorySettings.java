@@ -0,0 +1,16 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "chat-history" section of config.yml.
+
+    - enabled      -> whether chat is recorded at all
+    - capacity     -> how many lines are kept (0 when disabled)
+    - replayOnJoin -> how many lines a joining player is shown
+ */
+public record ChatHistorySettings(
+        boolean enabled,
+        int capacity,
+        int replayOnJoin
+) {
+    public static final ChatHistorySettings DISABLED = new ChatHistorySettings(false, 0, 0);
+}
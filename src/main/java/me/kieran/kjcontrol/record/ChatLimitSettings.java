@@ -0,0 +1,28 @@
+package me.kieran.kjcontrol.record;
+
+import net.kyori.adventure.text.Component;
+
+import java.util.List;
+
+/*
+    Represents the "chat-limits" section of config.yml.
+
+    - enabled            -> whether chat is limited at all
+    - bypassPermission   -> players with this are never limited
+    - defaultTier        -> the limits for players without a tier
+    - tiers              -> permission-based tiers, highest priority first
+    - rateLimitedMessage -> sent to a player whose message was over their rate limit
+    - duplicateMessage   -> sent to a player whose message repeated their last one
+ */
+public record ChatLimitSettings(
+        boolean enabled,
+        String bypassPermission,
+        ChatLimitTier defaultTier,
+        List<ChatLimitTier> tiers,
+        Component rateLimitedMessage,
+        Component duplicateMessage
+) {
+    public static final ChatLimitSettings DISABLED = new ChatLimitSettings(
+            false, "", new ChatLimitTier("default", 0, "", 1, 0, 0), List.of(), Component.empty(), Component.empty()
+    );
+}
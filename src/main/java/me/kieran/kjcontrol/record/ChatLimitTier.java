@@ -0,0 +1,21 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents one tier of chat limits from the
+    "chat-limits" section of config.yml.
+
+    - name            -> the key of the tier in config.yml ("default" for the base limits)
+    - priority        -> higher priorities are checked first
+    - permission      -> the permission a player needs to use this tier
+    - burst           -> how many messages can be sent back to back
+    - perSecond       -> how quickly the burst refills, in messages per second
+    - duplicateWindow -> how long a repeated message is blocked for, in nanoseconds (0 = never)
+ */
+public record ChatLimitTier(
+        String name,
+        int priority,
+        String permission,
+        double burst,
+        double perSecond,
+        long duplicateWindow
+) {}
@@ -0,0 +1,25 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.UUID;
+
+/*
+    Represents a single line waiting to be written to the chat log.
+
+    Entries are created on the chat and main threads and handed
+    to the chat log writer thread, which formats and writes them.
+
+    - timestamp -> the System.currentTimeMillis() the event happened at
+    - type      -> what kind of event this is
+    - player    -> the UUID of the player involved
+    - name      -> the player's name at the time
+    - message   -> the plain text of the message (null for joins and quits)
+ */
+public record ChatLogEntry(
+        long timestamp,
+        Type type,
+        UUID player,
+        String name,
+        String message
+) {
+    public enum Type { CHAT, JOIN, QUIT }
+}
@@ -0,0 +1,18 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "chat-log" section of config.yml.
+
+    - enabled       -> whether anything is logged
+    - flushInterval -> how long the writer waits between batches, in nanoseconds
+    - maxSize       -> the size (bytes) at which the log is rotated, 0 = never
+    - rotateEvery   -> the age (ms) at which the log is rotated, 0 = never
+ */
+public record ChatLogSettings(
+        boolean enabled,
+        long flushInterval,
+        long maxSize,
+        long rotateEvery
+) {
+    public static final ChatLogSettings DISABLED = new ChatLogSettings(false, 0, 0, 0);
+}
@@ -0,0 +1,20 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the rate limiter state of a single player.
+
+    States are immutable. ChatLimitUtil swaps in a new state
+    with a compare-and-set, so concurrent chat threads never
+    need a lock to update the same player.
+
+    - tokens      -> messages the player can currently send
+    - refilledAt  -> the System.nanoTime() tokens were last worked out at
+    - lastMessage -> the player's last allowed message, normalised
+    - lastSentAt  -> the System.nanoTime() that message was sent at
+ */
+public record ChatRateState(
+        double tokens,
+        long refilledAt,
+        String lastMessage,
+        long lastSentAt
+) {}
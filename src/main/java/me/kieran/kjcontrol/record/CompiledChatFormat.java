@@ -0,0 +1,272 @@
+package me.kieran.kjcontrol.record;
+
+import me.kieran.kjcontrol.util.ChatHeaderCacheUtil;
+import me.kieran.kjcontrol.util.ResolveUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.entity.Player;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Represents a ChatFormat that has been compiled into templates.
+
+    This is what the chat listener actually renders with:
+    - Static MiniMessage markup was parsed once, at load time
+    - Only the template slots are resolved per message
+    - Rendering produces a ResolvedChatFormat
+
+    The original ChatFormat is kept for its raw strings,
+    which are still used for things like empty checks.
+
+    headerPlaceholders lists every normal placeholder used by the
+    prefix, name, hover and click parts. The chat header cache
+    keeps a header no longer than their shortest cache TTL.
+
+    messageStyle is the style the suffix ends with. It is only set
+    in COMPONENT message mode, and is null in LEGACY mode, where the
+    message is parsed into the suffix's message slot instead.
+ */
+public record CompiledChatFormat(
+        ChatFormat format,
+        Template prefix,
+        Template name,
+        Template hoverName,
+        Template clickName,
+        Template suffix,
+        List<String> headerPlaceholders,
+        Style messageStyle
+) {
+    /*
+        The chat-format.yml key of each template, in the
+        same order as templates().
+     */
+    private static final List<String> FIELD_NAMES = List.of(
+            "prefix", "name", "name_hover", "name_click", "suffix"
+    );
+
+    /*
+        The number of templates that make up the header
+        (prefix, name, hover and click), which come first
+        in templates().
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /*
+        Checks whether this format depends on who is viewing it.
+
+        PlaceholderAPI relational placeholders (%rel_...%) resolve
+        differently for every sender/viewer pair, so a format that
+        contains one can not share a single render between viewers.
+
+        Formats without them look identical to everyone and only
+        need rendering once per message.
+     */
+    public boolean isViewerAware() {
+        for (Template template : templates()) {
+            if (template.isViewerAware()) return true;
+        }
+        return false;
+    }
+
+    /*
+        Resolves this format into a fully-rendered format
+        for a specific player and message.
+
+        Relational placeholders are left untouched, as there
+        is no viewer to resolve them against.
+     */
+    public ResolvedChatFormat resolve(Player player, Component message) {
+        return prepare(player, message).resolve(null);
+    }
+
+    /*
+        Does all the viewer-invariant work for a message.
+
+        Every template is resolved as far as possible without
+        knowing the viewer. Relational slots are left for
+        PreparedChatFormat.resolve(viewer) to finish.
+     */
+    public PreparedChatFormat prepare(Player player, Component message) {
+        Component body = messageStyle == null ? messageBody(player, message) : message;
+
+        List<Template> templates = templates();
+        Component[] components = new Component[templates.size()];
+        Component[][] values = new Component[templates.size()][];
+
+        /*
+            The prefix and name only depend on the sender, so when
+            they look the same to every viewer they come from the
+            per-player header cache rather than being rebuilt.
+         */
+        ChatHeader header = isHeaderViewerAware() ? null : ChatHeaderCacheUtil.get(this, player);
+
+        /*
+            Templates that look the same to everyone are rendered now.
+            Viewer-aware ones only have their shared slot values
+            resolved, and are rendered per viewer from those.
+         */
+        for (int i = 0; i < components.length; i++) {
+            if (header != null && i < HEADER_SIZE) continue;
+
+            Template template = templates.get(i);
+            if (template.isViewerAware()) values[i] = template.sharedValues(player, body);
+            else components[i] = template.renderShared(player, body);
+        }
+
+        return new PreparedChatFormat(this, player, body, header, components, values);
+    }
+
+    /*
+        Renders the prefix and the interactive name for a player.
+
+        Only called by the header cache, when a player has no
+        cached header or their cached one has gone stale.
+     */
+    public ChatHeader renderHeader(Player player) {
+        return new ChatHeader(
+                prefix.render(player, null, null),
+                assembleName(
+                        name.render(player, null, null),
+                        hoverName.render(player, null, null),
+                        clickName.render(player, null, null)
+                )
+        );
+    }
+
+    /*
+        Returns true if any part of the header (prefix, name,
+        hover or click) depends on who is viewing it.
+
+        Viewer-aware headers can not be cached per player.
+     */
+    public boolean isHeaderViewerAware() {
+        List<Template> templates = templates();
+        for (int i = 0; i < HEADER_SIZE; i++) {
+            if (templates.get(i).isViewerAware()) return true;
+        }
+        return false;
+    }
+
+    /*
+        Builds the final ResolvedChatFormat from fully
+        rendered components.
+
+        The components must be in the same order as templates().
+     */
+    public ResolvedChatFormat assemble(Component[] components) {
+
+        /*
+            Return a fully resolved chat format:
+            - prefix component
+            - interactive name component
+            - suffix + message component
+
+            This object is now safe to append directly
+            in the chat renderer.
+         */
+        return new ResolvedChatFormat(
+                components[0],
+                assembleName(components[1], components[2], components[3]),
+                components[4]
+        );
+    }
+
+    /*
+        Builds the interactive "name" component.
+
+        This is separated because it may gain hover
+        and click interactions.
+     */
+    private Component assembleName(Component name, Component hover, Component click) {
+
+        /*
+            Only add a hover event if hoverName is not empty.
+
+            This allows server owners to disable hover text
+            simply by leaving the config value blank.
+         */
+        if (!format.hoverName().isEmpty())
+            name = name.hoverEvent(
+                    HoverEvent.showText(hover)
+            );
+
+        /*
+            Only add a click event if clickName is not empty.
+
+            The click action runs a command, so the component
+            must be converted to plan text before use.
+         */
+        if (!format.clickName().isEmpty())
+            name = name.clickEvent(
+                    ClickEvent.runCommand(
+                            PlainTextComponentSerializer.plainText().serialize(click)
+                    )
+            );
+
+        return name;
+    }
+
+    /*
+        Returns the templates in rendering order:
+        0 - prefix
+        1 - name
+        2 - hoverName
+        3 - clickName
+        4 - suffix + message
+     */
+    public List<Template> templates() {
+        return List.of(prefix, name, hoverName, clickName, suffix);
+    }
+
+    /*
+        Adds the message body to a rendered suffix.
+
+        In LEGACY mode the body already sits in the suffix's message
+        slot, so the suffix is returned as-is.
+
+        In COMPONENT mode the original message Component is placed
+        after the suffix and given the suffix's trailing style as a
+        fallback. Any styling the message already has is kept, and
+        the player's text is never re-parsed.
+     */
+    public Component attachMessage(Component suffix, Component body) {
+        if (messageStyle == null) return suffix;
+        return Component.textOfChildren(suffix, body.applyFallbackStyle(messageStyle));
+    }
+
+    /*
+        Returns the PlaceholderAPI placeholders used by each part
+        of this format, keyed by its name in chat-format.yml.
+
+        Parts that are constant (no placeholders) are left out,
+        as they never need PlaceholderAPI.
+     */
+    public Map<String, PlaceholderAnalysis> placeholders() {
+        Map<String, PlaceholderAnalysis> placeholders = new LinkedHashMap<>();
+        List<Template> templates = templates();
+
+        for (int i = 0; i < templates.size(); i++) {
+            PlaceholderAnalysis analysis = templates.get(i).analysis();
+            if (!analysis.isConstant()) placeholders.put(FIELD_NAMES.get(i), analysis);
+        }
+        return placeholders;
+    }
+
+    /*
+        Builds the Component that fills the message slot.
+
+        Only used in LEGACY message mode. The message is converted
+        to plain text and parsed with PlaceholderAPI and MiniMessage,
+        matching how it was treated when it was part of the suffix string.
+     */
+    private static Component messageBody(Player player, Component message) {
+        String plain = PlainTextComponentSerializer.plainText().serialize(message);
+        return ResolveUtil.deserialize(ResolveUtil.applyPlaceholders(player, plain), player);
+    }
+}
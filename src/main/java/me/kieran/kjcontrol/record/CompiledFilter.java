@@ -0,0 +1,100 @@
+package me.kieran.kjcontrol.record;
+
+import me.kieran.kjcontrol.util.FilterUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+    Represents filter.yml, compiled and ready to match messages.
+
+    - automaton       -> every word, compiled into a single matcher
+    - fold            -> maps each char to the char it is matched as
+    - censorCharacter -> the character censored words are replaced with
+    - wholeWords      -> whether words only match on their own
+    - blockedMessage  -> sent to a player when their message is blocked
+ */
+public record CompiledFilter(
+        FilterUtil.Automaton automaton,
+        char[] fold,
+        char censorCharacter,
+        boolean wholeWords,
+        Component blockedMessage
+) {
+    /*
+        Runs a message through the filter.
+
+        Safe to call from any thread.
+     */
+    public FilterResult filter(String message) {
+        return automaton.filter(message, fold, censorCharacter, wholeWords);
+    }
+
+    /*
+        Censors the matched words inside a chat message component,
+        keeping the rest of the component (colours, hover and click
+        events, etc.) exactly as it was.
+
+        @param message  The message component
+        @param plain    The message as plain text, as it was filtered
+        @param censored The filtered plain text from filter()
+
+        Safe to call from any thread.
+     */
+    public Component censor(Component message, String plain, String censored) {
+        /*
+            Find each censored range, and the distinct words they cover.
+
+            Replacements work on each piece of text in the component,
+            so the words are matched as literals, and a running count
+            tells which occurrence of a word was actually censored
+            (e.g. with whole-words on, "bad" but not the one in "badge").
+         */
+        Set<String> words = new LinkedHashSet<>();
+        for (int i = 0; i < plain.length(); i++) {
+            if (plain.charAt(i) == censored.charAt(i)) continue;
+
+            int start = i;
+            while (i < plain.length() && plain.charAt(i) != censored.charAt(i)) i++;
+            words.add(plain.substring(start, i));
+        }
+        if (words.isEmpty()) return message;
+
+        Pattern pattern = Pattern.compile(words.stream().map(Pattern::quote).collect(Collectors.joining("|")));
+
+        List<Boolean> occurrences = new ArrayList<>();
+        Matcher matcher = pattern.matcher(plain);
+        while (matcher.find()) {
+            int start = matcher.start();
+            occurrences.add(!plain.regionMatches(start, censored, start, matcher.end() - start));
+        }
+
+        int[] seen = {0};
+        Component result = message.replaceText(TextReplacementConfig.builder()
+                .match(pattern)
+                .replacement((match, builder) -> {
+                    int index = seen[0]++;
+
+                    // Anything past what was counted is censored, so a mismatch never lets a word through.
+                    if (index < occurrences.size() && !occurrences.get(index)) return builder;
+                    return builder.content(String.valueOf(censorCharacter).repeat(match.group().length()));
+                })
+                .build());
+
+        /*
+            A word split across two pieces of text (e.g. half of it
+            coloured) can't be matched above. If anything is still
+            left uncensored, fall back to the censored plain text.
+         */
+        String after = PlainTextComponentSerializer.plainText().serialize(result);
+        return after.equals(censored) ? result : Component.text(censored);
+    }
+}
@@ -0,0 +1,112 @@
+package me.kieran.kjcontrol.record;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+    Represents all of KJControl's loaded configuration at one moment.
+
+    A reload builds a complete new snapshot off to the side, then
+    publishes it with a single write. Code that reads the snapshot
+    once and then works from it always sees one consistent load:
+    never a mix of old and new files, and never a format that
+    disappears half way through a message.
+
+    - config            -> the parsed config.yml (treated as read-only)
+    - chatFormatEnabled -> features.enable-chat-format
+    - messagesEnabled   -> features.messages.enabled
+    - filterEnabled     -> features.enable-filter
+    - chatFormats       -> chat-format.yml, or null if disabled or invalid
+    - messages          -> messages.yml, or null if disabled
+    - filter            -> filter.yml, or null if disabled
+    - menus             -> menus.yml, keyed by menu name
+    - settings          -> the settings of each subsystem, from config.yml
+    - loadTimes         -> how long each file took to read and compile
+ */
+public record ConfigSnapshot(
+        FileConfiguration config,
+        boolean chatFormatEnabled,
+        boolean messagesEnabled,
+        boolean filterEnabled,
+        LoadedChatFormats chatFormats,
+        LoadedMessages messages,
+        CompiledFilter filter,
+        Map<String, MenuDefinition> menus,
+        FeatureSettings settings,
+        List<FileLoadTime> loadTimes
+) {
+    /*
+        The snapshot in use before anything has been loaded.
+     */
+    public static final ConfigSnapshot EMPTY = new ConfigSnapshot(
+            new YamlConfiguration(), false, false, false, null, null, null, Map.of(), FeatureSettings.DISABLED, List.of()
+    );
+
+    /*
+        Returns whether a valid chat format is loaded and enabled.
+     */
+    public boolean isChatFormatLoaded() {
+        return chatFormatEnabled && chatFormats != null;
+    }
+
+    /*
+        Returns whether messages.yml is loaded and enabled.
+     */
+    public boolean isMessagesLoaded() {
+        return messagesEnabled && messages != null;
+    }
+
+    /*
+        Returns whether a word filter is loaded and enabled.
+     */
+    public boolean isFilterLoaded() {
+        return filterEnabled && filter != null;
+    }
+
+    /*
+        Returns a copy of this snapshot with new chat formats,
+        used when only chat-format.yml has changed.
+     */
+    public ConfigSnapshot withChatFormats(LoadedChatFormats chatFormats) {
+        return new ConfigSnapshot(
+                config, chatFormatEnabled, messagesEnabled, filterEnabled,
+                chatFormats, messages, filter, menus, settings, loadTimes
+        );
+    }
+
+    /*
+        Returns a copy of this snapshot with new messages,
+        used when only messages.yml has changed.
+     */
+    public ConfigSnapshot withMessages(LoadedMessages messages) {
+        return new ConfigSnapshot(
+                config, chatFormatEnabled, messagesEnabled, filterEnabled,
+                chatFormats, messages, filter, menus, settings, loadTimes
+        );
+    }
+
+    /*
+        Returns a copy of this snapshot with a new filter,
+        used when only filter.yml has changed.
+     */
+    public ConfigSnapshot withFilter(CompiledFilter filter) {
+        return new ConfigSnapshot(
+                config, chatFormatEnabled, messagesEnabled, filterEnabled,
+                chatFormats, messages, filter, menus, settings, loadTimes
+        );
+    }
+
+    /*
+        Returns a copy of this snapshot with new menus,
+        used when only menus.yml has changed.
+     */
+    public ConfigSnapshot withMenus(Map<String, MenuDefinition> menus) {
+        return new ConfigSnapshot(
+                config, chatFormatEnabled, messagesEnabled, filterEnabled,
+                chatFormats, messages, filter, menus, settings, loadTimes
+        );
+    }
+}
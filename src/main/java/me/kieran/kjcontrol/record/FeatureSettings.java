@@ -0,0 +1,35 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the settings of every subsystem configured in
+    config.yml, read once per load as part of a ConfigSnapshot.
+
+    Each subsystem reads its own record from the snapshot in use,
+    so the async chat threads always see one subsystem's settings
+    from a single load - never some values from before a reload
+    and some from after.
+ */
+public record FeatureSettings(
+        PlaceholderCacheSettings placeholderCache,
+        PlaceholderSnapshotSettings placeholderSnapshots,
+        LocalChatSettings localChat,
+        ChatLimitSettings chatLimits,
+        ChatHistorySettings chatHistory,
+        ChatLogSettings chatLog,
+        JoinQuitSettings joinQuit,
+        FileWatcherSettings fileWatcher
+) {
+    /*
+        The settings in use before anything has been loaded.
+     */
+    public static final FeatureSettings DISABLED = new FeatureSettings(
+            PlaceholderCacheSettings.DISABLED,
+            PlaceholderSnapshotSettings.DISABLED,
+            LocalChatSettings.DISABLED,
+            ChatLimitSettings.DISABLED,
+            ChatHistorySettings.DISABLED,
+            ChatLogSettings.DISABLED,
+            JoinQuitSettings.DISABLED,
+            FileWatcherSettings.DISABLED
+    );
+}
@@ -0,0 +1,13 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents how long one file took to read and compile
+    during a reload, for the report sent to whoever reloaded.
+
+    - file  -> the file name, e.g. "chat-format.yml"
+    - nanos -> how long it took, in nanoseconds
+ */
+public record FileLoadTime(
+        String file,
+        long nanos
+) {}
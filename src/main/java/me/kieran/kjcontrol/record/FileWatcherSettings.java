@@ -0,0 +1,15 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "auto-reload" section of config.yml.
+
+    - enabled  -> whether the plugin folder is watched at all
+    - debounce -> how long (ms) the files must be left alone
+                  before the changes are loaded
+ */
+public record FileWatcherSettings(
+        boolean enabled,
+        long debounce
+) {
+    public static final FileWatcherSettings DISABLED = new FileWatcherSettings(false, 0);
+}
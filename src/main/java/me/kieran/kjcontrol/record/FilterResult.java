@@ -0,0 +1,14 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the outcome of running a chat message
+    through the word filter.
+
+    - blocked -> the message contains a blocked word and must not be sent
+    - message -> the message to send, with any censored words replaced
+                 (the same String instance if nothing was changed)
+ */
+public record FilterResult(
+        boolean blocked,
+        String message
+) {}
@@ -0,0 +1,16 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "join-quit-summary" section of config.yml.
+
+    - enabled   -> whether join/quit storms are summarised at all
+    - threshold -> more joins (or quits) than this in one window starts summarising
+    - window    -> the length of a window, in ticks
+ */
+public record JoinQuitSettings(
+        boolean enabled,
+        int threshold,
+        long window
+) {
+    public static final JoinQuitSettings DISABLED = new JoinQuitSettings(false, 0, 0);
+}
@@ -0,0 +1,76 @@
+package me.kieran.kjcontrol.record;
+
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+    Represents everything loaded from chat-format.yml.
+
+    A new LoadedChatFormats is built on every reload and
+    published as part of a ConfigSnapshot, so a chat message
+    always sees formats from a single load.
+
+    - defaultFormat -> the "format" section, used by players without a ranked format
+    - rankedFormats -> the "formats" section, highest priority first
+    - placeholders  -> every normal PlaceholderAPI placeholder used by any format
+    - version       -> a number that changes on every load of chat-format.yml
+    - selections    -> the format each online player uses
+
+    The selections map is the only mutable part. It belongs to this
+    load alone, so publishing a new load drops every old selection
+    along with the formats it pointed to.
+ */
+public record LoadedChatFormats(
+        CompiledChatFormat defaultFormat,
+        List<RankedChatFormat> rankedFormats,
+        Set<String> placeholders,
+        int version,
+        Map<UUID, CompiledChatFormat> selections
+) {
+    /*
+        Works out (or re-works out) which format a player uses.
+
+        The highest priority format the player has permission for
+        is chosen, falling back to the default format.
+     */
+    public CompiledChatFormat select(Player player) {
+        CompiledChatFormat selected = defaultFormat;
+
+        for (RankedChatFormat ranked : rankedFormats) {
+            if (player.hasPermission(ranked.permission())) {
+                selected = ranked.format();
+                break;
+            }
+        }
+
+        selections.put(player.getUniqueId(), selected);
+        return selected;
+    }
+
+    /*
+        Returns the format a player uses.
+
+        This is normally a single map lookup. If the player has
+        no selection yet (e.g. they are chatting before their join
+        has finished), it is worked out now.
+     */
+    public CompiledChatFormat formatFor(Player player) {
+        CompiledChatFormat format = selections.get(player.getUniqueId());
+        return format != null ? format : select(player);
+    }
+
+    /*
+        Returns the name of a format from this load:
+        its key under "formats", or "default".
+     */
+    public String nameOf(CompiledChatFormat format) {
+        for (RankedChatFormat ranked : rankedFormats) {
+            if (ranked.format() == format) return ranked.name();
+        }
+        return "default";
+    }
+}
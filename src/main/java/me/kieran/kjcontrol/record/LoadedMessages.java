@@ -0,0 +1,62 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.Locale;
+import java.util.Map;
+
+/*
+    Represents everything loaded from messages.yml
+    and the locale files in the lang folder.
+
+    Built on every reload and published as part of a
+    ConfigSnapshot, so the join and quit messages always
+    come from the same load.
+
+    Each message is compiled into a Template when it is loaded,
+    so a join or quit only fills in the player's slots.
+
+    - joinQuitEnabled -> whether join/quit messages are replaced (from config.yml)
+    - defaultBundle   -> the messages from messages.yml
+    - locales         -> the bundle for each locale file, keyed by file name (e.g. "de_de")
+    - lookups         -> the bundle already chosen for each player locale
+
+    The lookups map is the only mutable part. It belongs to this
+    load alone, so publishing a new load starts it afresh.
+ */
+public record LoadedMessages(
+        boolean joinQuitEnabled,
+        MessageBundle defaultBundle,
+        Map<String, MessageBundle> locales,
+        Map<Locale, MessageBundle> lookups
+) {
+    /*
+        Returns whether any locale files were loaded.
+
+        Without them, every player gets the default bundle
+        and messages can be rendered once for everyone.
+     */
+    public boolean hasLocales() {
+        return !locales.isEmpty();
+    }
+
+    /*
+        Returns the bundle to use for a locale.
+
+        The full locale (e.g. "de_de") is tried first, then
+        just its language (e.g. "de"), then messages.yml.
+        The answer is remembered, so each locale is only
+        worked out once per load.
+     */
+    public MessageBundle bundleFor(Locale locale) {
+        if (locales.isEmpty()) return defaultBundle;
+
+        MessageBundle bundle = lookups.get(locale);
+        if (bundle != null) return bundle;
+
+        bundle = locales.get(locale.toString().toLowerCase(Locale.ROOT));
+        if (bundle == null) bundle = locales.get(locale.getLanguage().toLowerCase(Locale.ROOT));
+        if (bundle == null) bundle = defaultBundle;
+
+        lookups.put(locale, bundle);
+        return bundle;
+    }
+}
@@ -0,0 +1,16 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "local-chat" section of config.yml.
+
+    - enabled       -> whether chat is limited to nearby players
+    - radiusSquared -> the chat radius, squared, for distance checks
+    - cellRadius    -> how many grid cells the radius spans in each direction
+ */
+public record LocalChatSettings(
+        boolean enabled,
+        double radiusSquared,
+        int cellRadius
+) {
+    public static final LocalChatSettings DISABLED = new LocalChatSettings(false, 0, 0);
+}
@@ -0,0 +1,29 @@
+package me.kieran.kjcontrol.record;
+
+import me.kieran.kjcontrol.menu.MenuSource;
+import net.kyori.adventure.text.Component;
+
+/*
+    Represents a single menu from menus.yml.
+
+    - name         -> the key under "menus", used by /kjcontrol menu <name>
+    - title        -> the title shown at the top of the menu
+    - rows         -> the number of rows, including the navigation row
+    - permission   -> the permission needed to open it, or null
+    - source       -> what the menu lists
+    - item         -> how each listed entry looks
+    - previousPage -> the "previous page" button
+    - nextPage     -> the "next page" button
+    - loading      -> the lore shown while an entry's lore is being built
+ */
+public record MenuDefinition(
+        String name,
+        Component title,
+        int rows,
+        String permission,
+        MenuSource source,
+        MenuItemDefinition item,
+        MenuItemDefinition previousPage,
+        MenuItemDefinition nextPage,
+        Component loading
+) {}
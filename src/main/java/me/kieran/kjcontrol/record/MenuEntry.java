@@ -0,0 +1,22 @@
+package me.kieran.kjcontrol.record;
+
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.entity.Player;
+
+/*
+    Represents one thing listed in a paginated menu,
+    such as an online player or a chat message.
+
+    Entries are cheap to create: the tags only look values up
+    when a name or lore line actually uses them, so expensive
+    tags (e.g. a chat format preview) cost nothing for entries
+    on pages nobody looks at.
+
+    - player -> the player the entry is about, used for
+                PlaceholderAPI and player heads (may be null)
+    - tags   -> the MiniMessage tags the entry provides, e.g. <world>
+ */
+public record MenuEntry(
+        Player player,
+        TagResolver tags
+) {}
@@ -0,0 +1,25 @@
+package me.kieran.kjcontrol.record;
+
+import org.bukkit.Material;
+
+import java.util.List;
+
+/*
+    Represents how an item in a config-defined menu looks,
+    as read from menus.yml.
+
+    The name and lore are kept as raw MiniMessage strings,
+    because they are filled in with each entry's own tags.
+
+    - material     -> the item type
+    - name         -> the item name
+    - lore         -> the lines below the name (may use PlaceholderAPI)
+    - loreAnalysis -> every placeholder used across the lore, found once
+                      when menus.yml is loaded
+ */
+public record MenuItemDefinition(
+        Material material,
+        String name,
+        List<String> lore,
+        PlaceholderAnalysis loreAnalysis
+) {}
@@ -0,0 +1,17 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the join/quit messages for a single locale,
+    compiled and ready to render.
+
+    - joinMessage -> the compiled join message, or null if none is set
+    - quitMessage -> the compiled quit message, or null if none is set
+    - joinSummary -> the compiled message sent instead of many joins at once
+    - quitSummary -> the compiled message sent instead of many quits at once
+ */
+public record MessageBundle(
+        Template joinMessage,
+        Template quitMessage,
+        Template joinSummary,
+        Template quitSummary
+) {}
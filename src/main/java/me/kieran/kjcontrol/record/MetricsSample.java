@@ -0,0 +1,25 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents KJControl's metrics over one sampling period,
+    as shown on the performance dashboard.
+
+    - chatPerSecond     -> chat messages sent per second
+    - render            -> time spent rendering chat formats
+    - placeholders      -> time spent inside PlaceholderAPI expansions
+    - placeholderHits   -> placeholder cache lookups answered from the cache
+    - placeholderMisses -> placeholder cache lookups sent to PlaceholderAPI
+    - headerHits        -> chat headers reused from the header cache
+    - headerMisses      -> chat headers that had to be rebuilt
+    - lastReload        -> when the config was last (re)loaded, in epoch millis
+ */
+public record MetricsSample(
+        double chatPerSecond,
+        TimingSample render,
+        TimingSample placeholders,
+        long placeholderHits,
+        long placeholderMisses,
+        long headerHits,
+        long headerMisses,
+        long lastReload
+) {}
@@ -0,0 +1,52 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.List;
+
+/*
+    Represents the PlaceholderAPI placeholders found in a
+    single config string, worked out once when it is loaded.
+
+    Most format and message strings contain no placeholders
+    at all. Knowing that up front lets them skip PlaceholderAPI
+    entirely instead of being scanned on every message.
+
+    The placeholders are stored exactly as written, including
+    the surrounding % characters (e.g. "%player_name%").
+ */
+public record PlaceholderAnalysis(
+        List<String> placeholders
+) {
+    /*
+        An analysis for a string with no placeholders.
+     */
+    public static final PlaceholderAnalysis CONSTANT = new PlaceholderAnalysis(List.of());
+
+    /*
+        Returns true if the string has no placeholders,
+        meaning PlaceholderAPI can be skipped for it.
+     */
+    public boolean isConstant() {
+        return placeholders.isEmpty();
+    }
+
+    /*
+        Returns true if the string contains a relational
+        placeholder (%rel_...%), which depends on the viewer.
+     */
+    public boolean isRelational() {
+        for (String placeholder : placeholders) {
+            if (placeholder.startsWith("%rel_")) return true;
+        }
+        return false;
+    }
+
+    /*
+        Returns only the normal (non-relational) placeholders,
+        which depend on the sender alone.
+     */
+    public List<String> standardPlaceholders() {
+        return placeholders.stream()
+                .filter(placeholder -> !placeholder.startsWith("%rel_"))
+                .toList();
+    }
+}
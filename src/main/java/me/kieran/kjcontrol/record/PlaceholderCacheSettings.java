@@ -0,0 +1,20 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.Map;
+
+/*
+    Represents the "placeholder-cache" section of config.yml.
+
+    - enabled      -> whether values are cached at all
+    - defaultTtl   -> how long a value is kept, in nanoseconds
+    - maxEntries   -> the most values kept for a single player
+    - ttlOverrides -> per-placeholder TTLs, in nanoseconds
+ */
+public record PlaceholderCacheSettings(
+        boolean enabled,
+        long defaultTtl,
+        int maxEntries,
+        Map<String, Long> ttlOverrides
+) {
+    public static final PlaceholderCacheSettings DISABLED = new PlaceholderCacheSettings(false, 0, 0, Map.of());
+}
@@ -0,0 +1,17 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.Map;
+
+/*
+    Represents the placeholder values of a single player,
+    resolved together on the main thread.
+
+    Snapshots are immutable once created. The async chat
+    threads only ever read them, so no PlaceholderAPI
+    expansion is called from off the main thread.
+
+    - values -> placeholder (e.g. "%vault_prefix%") to resolved value
+ */
+public record PlaceholderSnapshot(
+        Map<String, String> values
+) {}
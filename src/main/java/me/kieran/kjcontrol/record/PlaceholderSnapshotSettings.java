@@ -0,0 +1,14 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents the "placeholder-snapshots" section of config.yml.
+
+    - enabled  -> whether snapshot mode is on (always false without PlaceholderAPI)
+    - interval -> how many ticks a full refresh of every player is spread over
+ */
+public record PlaceholderSnapshotSettings(
+        boolean enabled,
+        int interval
+) {
+    public static final PlaceholderSnapshotSettings DISABLED = new PlaceholderSnapshotSettings(false, 1);
+}
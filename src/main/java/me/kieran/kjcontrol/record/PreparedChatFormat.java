@@ -0,0 +1,67 @@
+package me.kieran.kjcontrol.record;
+
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/*
+    Represents a chat format that has been resolved as far
+    as possible without knowing who is going to see it.
+
+    This record sits between CompiledChatFormat and ResolvedChatFormat:
+    - Normal PlaceholderAPI placeholders have been applied
+    - Every viewer-invariant template has been rendered once
+    - Viewer-aware templates have their shared slot values resolved
+      (sharedValues), and are rendered per viewer from those
+
+    When the header (prefix and name) came from the header cache,
+    it is held separately and its slots in sharedComponents are null.
+
+    A PreparedChatFormat belongs to a single chat message,
+    so it is created once and then reused for every viewer.
+ */
+public record PreparedChatFormat(
+        CompiledChatFormat format,
+        Player source,
+        Component message,
+        ChatHeader header,
+        Component[] sharedComponents,
+        Component[][] sharedValues
+) {
+    /*
+        Finishes this format for a specific viewer.
+
+        Only viewer-aware templates are touched here.
+        Everything else is reused as-is.
+
+        If the viewer is not a player (e.g. the console) or is
+        null, relational placeholders are left unresolved.
+     */
+    public ResolvedChatFormat resolve(Audience viewer) {
+        Player viewerPlayer = viewer instanceof Player player ? player : null;
+
+        List<Template> templates = format.templates();
+        Component[] components = sharedComponents.clone();
+
+        for (int i = 0; i < components.length; i++) {
+            Template template = templates.get(i);
+            if (!template.isViewerAware()) continue;
+
+            components[i] = template.renderViewer(sharedValues[i], source, message, viewerPlayer);
+        }
+
+        int last = components.length - 1;
+        components[last] = format.attachMessage(components[last], message);
+
+        /*
+            A cached header is already fully built,
+            so only the suffix + message is added to it.
+         */
+        if (header != null)
+            return new ResolvedChatFormat(header.prefix(), header.name(), components[last]);
+
+        return format.assemble(components);
+    }
+}
@@ -0,0 +1,17 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents one of the permission-based formats from the
+    "formats" section of chat-format.yml.
+
+    - name       -> the key of the format in chat-format.yml
+    - priority   -> higher priorities are checked first
+    - permission -> the permission a player needs to use this format
+    - format     -> the compiled format itself
+ */
+public record RankedChatFormat(
+        String name,
+        int priority,
+        String permission,
+        CompiledChatFormat format
+) {}
@@ -0,0 +1,237 @@
+package me.kieran.kjcontrol.record;
+
+import me.kieran.kjcontrol.util.ResolveUtil;
+import me.kieran.kjcontrol.util.TemplateUtil;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.KeybindComponent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Represents a single format string that has been compiled
+    ahead of time by TemplateUtil.
+
+    A compiled template holds:
+    - The fully parsed MiniMessage Component tree
+    - A marker in that tree for every slot
+    - The list of slots, in marker index order
+    - The PlaceholderAPI placeholders the string uses
+
+    Rendering a template only resolves the slot values and
+    swaps them into the tree. The surrounding MiniMessage
+    markup is never parsed again.
+
+    Some strings can not be compiled safely (for example a
+    placeholder used inside a tag argument). These are kept
+    as "dynamic" templates, which are parsed on every render
+    exactly like the raw string used to be.
+ */
+public record Template(
+        String raw,
+        Component component,
+        List<TemplateSlot> slots,
+        PlaceholderAnalysis analysis,
+        boolean dynamic
+) {
+
+    /*
+        Returns true if this template renders differently
+        for different viewers.
+     */
+    public boolean isViewerAware() {
+        if (dynamic) return analysis.isRelational();
+
+        for (TemplateSlot slot : slots) {
+            if (slot.type() == TemplateSlot.Type.RELATIONAL) return true;
+        }
+        return false;
+    }
+
+    /*
+        Fully renders this template for a player.
+
+        @param player  The player the template is being rendered for
+        @param message The value for the message slot, if any
+        @param viewer  The player viewing the result, or null if unknown.
+                       Relational placeholders are left unresolved without one.
+     */
+    public Component render(Player player, Component message, Player viewer) {
+        if (dynamic) return renderDynamic(player, message, viewer);
+        return fill(component, values(player, message, viewer, false));
+    }
+
+    /*
+        Renders a template that looks the same to every viewer.
+
+        Returns null for dynamic templates that are viewer-aware,
+        as they can only be rendered once the viewer is known.
+        Viewer-aware compiled templates use sharedValues() instead.
+     */
+    public Component renderShared(Player player, Component message) {
+        if (dynamic) return isViewerAware() ? null : renderDynamic(player, message, null);
+        return fill(component, values(player, message, null, false));
+    }
+
+    /*
+        Resolves every slot of a viewer-aware template that looks
+        the same to every viewer, leaving relational slots null.
+
+        The values are kept rather than filled into the tree, so
+        each viewer's render fills the compiled tree in one pass.
+        A second pass over an already filled tree would walk into
+        the inserted values, including the player's own message.
+
+        Returns null for dynamic templates.
+     */
+    public Component[] sharedValues(Player player, Component message) {
+        return dynamic ? null : values(player, message, null, true);
+    }
+
+    /*
+        Finishes a viewer-aware template for a specific viewer.
+
+        Only relational slots are resolved here; everything
+        else was already resolved by sharedValues().
+     */
+    public Component renderViewer(Component[] shared, Player player, Component message, Player viewer) {
+        if (shared == null) return renderDynamic(player, message, viewer);
+
+        Component[] values = shared.clone();
+        for (int i = 0; i < values.length; i++) {
+            TemplateSlot slot = slots.get(i);
+            if (slot.type() == TemplateSlot.Type.RELATIONAL) values[i] = relationalValue(slot, player, viewer);
+        }
+        return fill(component, values);
+    }
+
+    /*
+        Renders a template compiled by TemplateUtil.compileValue(),
+        filling every use of its value tag with the same value.
+
+        @param tag   The name of the value tag, as it was compiled with
+        @param value The value to fill in
+     */
+    public Component renderValue(String tag, Component value) {
+        if (dynamic) return ResolveUtil.serializer().deserialize(raw, Placeholder.component(tag, value));
+
+        Component[] values = new Component[slots.size()];
+        Arrays.fill(values, value);
+        return fill(component, values);
+    }
+
+    /*
+        Resolves the value of every slot in this template.
+
+        The returned array lines up with slots(), so the
+        marker for slot N is replaced with values[N].
+
+        When deferRelational is true, relational slots are
+        left as null, to be resolved per viewer.
+     */
+    private Component[] values(Player player, Component message, Player viewer, boolean deferRelational) {
+        Component[] values = new Component[slots.size()];
+
+        for (int i = 0; i < values.length; i++) {
+            TemplateSlot slot = slots.get(i);
+            values[i] = switch (slot.type()) {
+                case USERNAME -> player.name();
+                case DISPLAYNAME -> player.displayName();
+                case MESSAGE -> message;
+                case PLACEHOLDER -> ResolveUtil.placeholderComponent(player, slot.key());
+                case RELATIONAL -> deferRelational ? null : relationalValue(slot, player, viewer);
+            };
+        }
+        return values;
+    }
+
+    /*
+        Resolves a relational slot for a sender/viewer pair.
+
+        Without a viewer the placeholder text is shown as-is,
+        matching how PlaceholderAPI treats unknown placeholders.
+     */
+    private static Component relationalValue(TemplateSlot slot, Player player, Player viewer) {
+        if (viewer == null) return Component.text(slot.key());
+        return ResolveUtil.relationalPlaceholderComponent(player, viewer, slot.key());
+    }
+
+    /*
+        Renders a dynamic template by parsing the raw string.
+
+        This is the slow path, used only for strings that could
+        not be compiled. The message slot is still passed in
+        as a Component rather than being appended as text.
+     */
+    private Component renderDynamic(Player player, Component message, Player viewer) {
+        String resolved = ResolveUtil.applyPlaceholders(player, raw, analysis);
+        if (viewer != null && analysis.isRelational())
+            resolved = ResolveUtil.applyRelationalPlaceholders(player, viewer, resolved);
+
+        return ResolveUtil.deserialize(
+                resolved,
+                player,
+                Placeholder.component(TemplateUtil.MESSAGE_TAG, message == null ? Component.empty() : message)
+        );
+    }
+
+    /*
+        Walks a compiled Component tree, replacing slot markers
+        with their values.
+
+        Inserted values are never walked, and only markers for
+        this template's own slots are replaced, so text that
+        looks like a marker inside a value is left alone.
+
+        Only the branches that actually contain a filled marker
+        are rebuilt; everything else is shared with the compiled
+        tree, since Components are immutable.
+
+        Hover text is walked as well, because MiniMessage resolves
+        placeholders inside <hover:show_text:'...'> arguments.
+     */
+    private static Component fill(Component node, Component[] values) {
+        if (values.length == 0) return node;
+
+        /*
+            A marker is replaced by its value. The marker's own style
+            is applied as a fallback so the value keeps any styling
+            it was placed inside of.
+         */
+        if (node instanceof KeybindComponent marker) {
+            int index = TemplateUtil.slotIndex(marker, values.length);
+            if (index >= 0) {
+                Component value = values[index];
+                return value == null ? node : value.applyFallbackStyle(marker.style());
+            }
+        }
+
+        Component result = node;
+
+        List<Component> children = node.children();
+        List<Component> filled = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component replaced = fill(child, values);
+            if (replaced == child) continue;
+
+            if (filled == null) filled = new ArrayList<>(children);
+            filled.set(i, replaced);
+        }
+        if (filled != null) result = result.children(filled);
+
+        HoverEvent<?> hover = node.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            Component text = (Component) hover.value();
+            Component replaced = fill(text, values);
+            if (replaced != text) result = result.hoverEvent(HoverEvent.showText(replaced));
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,39 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents a single slot inside a compiled Template.
+
+    A slot is a part of a format string that can not be known
+    until a message is actually sent, such as a player's name
+    or a PlaceholderAPI value. Everything around the slots is
+    parsed once, when the file is loaded.
+
+    Each slot has:
+    - A type, describing where its value comes from
+    - A key, which is the raw placeholder text for
+      PlaceholderAPI slots (e.g. "%player_name%")
+ */
+public record TemplateSlot(
+        Type type,
+        String key
+) {
+
+    /*
+        The different kinds of value a slot can hold.
+
+        - PLACEHOLDER -> a normal PlaceholderAPI placeholder
+        - RELATIONAL  -> a PlaceholderAPI relational placeholder (%rel_...%),
+                         which depends on both the sender and the viewer
+        - USERNAME    -> the internal <username> placeholder
+        - DISPLAYNAME -> the internal <displayname> placeholder
+        - MESSAGE     -> the chat message body
+     */
+    public enum Type {
+        PLACEHOLDER,
+        RELATIONAL,
+        USERNAME,
+        DISPLAYNAME,
+        MESSAGE
+    }
+
+}
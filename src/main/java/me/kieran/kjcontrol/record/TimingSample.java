@@ -0,0 +1,16 @@
+package me.kieran.kjcontrol.record;
+
+/*
+    Represents how long one kind of operation took
+    over a single sampling period.
+
+    - count        -> how many times it ran
+    - averageNanos -> the mean time taken
+    - p99Nanos     -> the time 99% of runs finished within
+                      (rounded up to the histogram bucket)
+ */
+public record TimingSample(
+        long count,
+        long averageNanos,
+        long p99Nanos
+) {}
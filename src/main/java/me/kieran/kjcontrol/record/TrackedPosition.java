@@ -0,0 +1,37 @@
+package me.kieran.kjcontrol.record;
+
+import java.util.UUID;
+
+/*
+    Represents the last known position of a player,
+    as held in the local chat spatial index.
+
+    Positions are written on the main thread (from movement
+    events) and read from the async chat threads, so they
+    are immutable and replaced as a whole.
+
+    - world -> the UUID of the world the player is in
+    - x/y/z -> the player's coordinates
+    - cell  -> the packed grid cell (chunk) the player is in
+ */
+public record TrackedPosition(
+        UUID world,
+        double x,
+        double y,
+        double z,
+        long cell
+) {
+    /*
+        Returns the squared distance between two positions.
+
+        Positions in different worlds are infinitely far apart.
+     */
+    public double distanceSquared(TrackedPosition other) {
+        if (!world.equals(other.world)) return Double.POSITIVE_INFINITY;
+
+        double dx = x - other.x;
+        double dy = y - other.y;
+        double dz = z - other.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -1,15 +1,36 @@
 package me.kieran.kjcontrol.util;
 
+import io.papermc.paper.chat.ChatRenderer;
 import me.kieran.kjcontrol.KJControl;
 import me.kieran.kjcontrol.record.ChatFormat;
+import me.kieran.kjcontrol.record.CompiledChatFormat;
+import me.kieran.kjcontrol.record.ConfigSnapshot;
+import me.kieran.kjcontrol.record.LoadedChatFormats;
+import me.kieran.kjcontrol.record.PlaceholderAnalysis;
+import me.kieran.kjcontrol.record.PreparedChatFormat;
+import me.kieran.kjcontrol.record.RankedChatFormat;
 import me.kieran.kjcontrol.record.ResolvedChatFormat;
+import me.kieran.kjcontrol.record.Template;
+import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class ChatFormatUtil {
 
@@ -32,37 +53,24 @@ public final class ChatFormatUtil {
     private static File file;
 
     /*
-        The currently loaded chat format configuration.
-
-        If this is null, chat formatting is considered disabled
-        or failed to load correctly.
+        Hands out a new version number to every load,
+        so the version of a load can be compared later.
      */
-    private static ChatFormat loadedFormat;
+    private static final AtomicInteger versions = new AtomicInteger();
 
     /*
-        Loads (or reloads) the chat-format.yml file and parses it
-        into a ChatFormat object.
-
-        This method is called:
-        - when the plugin enables
-        - when the plugin is reloaded via command
+        Reads the chat-format.yml file and parses its formats
+        into ChatFormat objects, then compiles them into templates.
+
+        Nothing live is changed here: the result is published as
+        part of a ConfigSnapshot. This method returns:
+        - the newly loaded formats
+        - null if the file is invalid (chat formatting is disabled)
+        - the formats currently loaded, if the file can't be read at all
      */
-    public static void load() {
+    public static LoadedChatFormats build() {
         KJControl plugin = KJControl.getInstance();
 
-        /*
-            Defensive check to ensure this class is not used
-            when the chat format feature is disabled in config.yml.
-
-            If this happens, it indicates a developer error,
-            not a user misconfiguration.
-         */
-        if (!ConfigUtil.chatFormatEnabled) {
-            throw new IllegalStateException(
-                    "Chat Format loader accessed while feature disabled"
-            );
-        }
-
         try {
             /*
                 If we haven't already created the File reference,
@@ -97,19 +105,19 @@ public final class ChatFormatUtil {
                 );
             }
 
+            /*
+                Read how player messages are added to the format.
+                This applies to every format in the file.
+             */
+            ChatFormat.MessageMode messageMode = readMessageMode(config.getString("message-mode", "legacy"));
+
             /*
                 Create a ChatFormat object from the configuration values.
 
                 ChatFormat is a simple data container that holds the raw
                 MiniMessage strings for each part of the chat format.
              */
-            loadedFormat = new ChatFormat(
-                config.getString("format.prefix"),
-                config.getString("format.name"),
-                config.getString("format.name_hover"),
-                config.getString("format.name_click"),
-                config.getString("format.suffix")
-            );
+            ChatFormat format = readFormat(config.getConfigurationSection("format"), null, messageMode);
 
             /*
                 Validate the loaded format.
@@ -118,12 +126,11 @@ public final class ChatFormatUtil {
                 the format is considered invalid and chat formatting
                 will be disabled.
              */
-            if (loadedFormat.isInvalid()) {
+            if (format.isInvalid()) {
                 plugin.getComponentLogger().error(
                         "chat-format.yml is invalid. Chat formatting has been disabled."
                 );
-                loadedFormat = null;
-                return;
+                return null;
             }
 
             /*
@@ -132,8 +139,68 @@ public final class ChatFormatUtil {
                 This is not an error, but it will result in players'
                 names not appearing in chat, which is usually unintended
              */
-            if (loadedFormat.name().isEmpty())
+            if (format.name().isEmpty())
                 plugin.getComponentLogger().warn("chat-format.yml: format.name is empty - chat names will be blank");
+
+            /*
+                Compile the format into templates.
+
+                All MiniMessage parsing of the static markup happens
+                here, once, instead of on every chat message.
+             */
+            CompiledChatFormat compiled = format.compile();
+            warnIfDynamic("format", compiled);
+
+            /*
+                Read the permission-based formats.
+
+                Any option a format leaves out is taken from the
+                default format, so small overrides stay short.
+             */
+            List<RankedChatFormat> ranked = new ArrayList<>();
+            ConfigurationSection formatsSection = config.getConfigurationSection("formats");
+            if (formatsSection != null) {
+                for (String key : formatsSection.getKeys(false)) {
+                    ConfigurationSection section = formatsSection.getConfigurationSection(key);
+                    if (section == null) continue;
+
+                    String permission = section.getString("permission");
+                    if (permission == null || permission.isEmpty()) {
+                        plugin.getComponentLogger().warn(
+                                "chat-format.yml: formats.{} has no permission and will be ignored", key
+                        );
+                        continue;
+                    }
+
+                    CompiledChatFormat rankedFormat = readFormat(section, format, messageMode).compile();
+                    warnIfDynamic("formats." + key, rankedFormat);
+
+                    ranked.add(new RankedChatFormat(key, section.getInt("priority", 0), permission, rankedFormat));
+                }
+            }
+
+            /*
+                Highest priority first, so selecting a format is
+                just "the first one the player has permission for".
+             */
+            ranked.sort(Comparator.comparingInt(RankedChatFormat::priority).reversed());
+
+            /*
+                Collect the placeholders every format needs,
+                so they can be resolved ahead of time if
+                placeholder snapshots are enabled.
+             */
+            Set<String> required = new LinkedHashSet<>();
+            collectPlaceholders(compiled, required);
+            for (RankedChatFormat rankedFormat : ranked) collectPlaceholders(rankedFormat.format(), required);
+
+            return new LoadedChatFormats(
+                    compiled,
+                    List.copyOf(ranked),
+                    Set.copyOf(required),
+                    versions.incrementAndGet(),
+                    new ConcurrentHashMap<>()
+            );
         } catch (Exception e) {
             /*
                 Catch any unexpected exceptions that occur while loading.
@@ -143,6 +210,68 @@ public final class ChatFormatUtil {
              */
             plugin.getComponentLogger().error("Failed to load chat-format.yml");
             plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+            return ConfigUtil.snapshot().chatFormats();
+        }
+    }
+
+    /*
+        Adds every normal PlaceholderAPI placeholder a format uses.
+     */
+    private static void collectPlaceholders(CompiledChatFormat format, Set<String> placeholders) {
+        for (PlaceholderAnalysis analysis : format.placeholders().values())
+            placeholders.addAll(analysis.standardPlaceholders());
+    }
+
+    /*
+        Reads a single format section from chat-format.yml.
+
+        @param section  The section holding prefix, name, etc.
+        @param defaults A format to take any missing option from,
+                        or null if every option is required
+     */
+    private static ChatFormat readFormat(
+            ConfigurationSection section, ChatFormat defaults, ChatFormat.MessageMode messageMode
+    ) {
+        if (section == null) return new ChatFormat(null, null, null, null, null, messageMode);
+
+        return new ChatFormat(
+                section.getString("prefix", defaults == null ? null : defaults.prefix()),
+                section.getString("name", defaults == null ? null : defaults.name()),
+                section.getString("name_hover", defaults == null ? null : defaults.hoverName()),
+                section.getString("name_click", defaults == null ? null : defaults.clickName()),
+                section.getString("suffix", defaults == null ? null : defaults.suffix()),
+                messageMode
+        );
+    }
+
+    /*
+        Let the server owner know about any part of a format
+        that could not be compiled. These still work, but are
+        parsed on every message like before.
+     */
+    private static void warnIfDynamic(String path, CompiledChatFormat format) {
+        if (format.templates().stream().anyMatch(Template::dynamic))
+            KJControl.getInstance().getComponentLogger().info(
+                    "chat-format.yml: some parts of {} use placeholders inside tags or gradients "
+                            + "and will be parsed per message", path
+            );
+    }
+
+    /*
+        Reads the message-mode option from chat-format.yml.
+
+        Older files don't have this option, so they keep the
+        original LEGACY behaviour. Unknown values fall back to
+        LEGACY too, with a warning.
+     */
+    private static ChatFormat.MessageMode readMessageMode(String value) {
+        try {
+            return ChatFormat.MessageMode.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            KJControl.getInstance().getComponentLogger().warn(
+                    "chat-format.yml: unknown message-mode '{}' - using legacy", value
+            );
+            return ChatFormat.MessageMode.LEGACY;
         }
     }
 
@@ -153,7 +282,58 @@ public final class ChatFormatUtil {
         chat formatting should be applied or skipped.
      */
     public static boolean isLoaded() {
-        return loadedFormat != null;
+        return ConfigUtil.snapshot().isChatFormatLoaded();
+    }
+
+    /*
+        Works out (or re-works out) which format a player uses.
+
+        Called on join, on reload, and whenever a player's
+        permissions may have changed. Other plugins can call it
+        too, after changing a player's permissions themselves.
+     */
+    public static void selectFormat(Player player) {
+        LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+        if (formats != null) formats.select(player);
+    }
+
+    /*
+        Works out which format every online player uses.
+
+        Called after a reload has published new formats, so
+        selection never happens per message.
+     */
+    public static void selectFormats() {
+        LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+        if (formats == null) return;
+
+        for (Player player : Bukkit.getOnlinePlayers()) formats.select(player);
+    }
+
+    /*
+        Forgets a player's selected format, e.g. when they quit.
+     */
+    public static void forgetFormat(UUID uuid) {
+        LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+        if (formats != null) formats.selections().remove(uuid);
+    }
+
+    /*
+        Returns the current format version, or 0 if
+        no chat format is loaded.
+     */
+    public static int getFormatVersion() {
+        LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+        return formats == null ? 0 : formats.version();
+    }
+
+    /*
+        Returns every normal PlaceholderAPI placeholder used
+        by the loaded formats, or an empty set if none is loaded.
+     */
+    public static Set<String> getPlaceholders() {
+        ConfigSnapshot config = ConfigUtil.snapshot();
+        return config.isChatFormatLoaded() ? config.chatFormats().placeholders() : Set.of();
     }
 
     /*
@@ -167,15 +347,86 @@ public final class ChatFormatUtil {
      */
     public static Component getFormat(Player player, Component message) {
         /*
-            Resolve the raw ChatFormat into a ResolvedChatFormat
+            Render the compiled format into a ResolvedChatFormat
             that contains fully built Adventure Components.
          */
-        ResolvedChatFormat format = loadedFormat.resolve(player, message);
+        LoadedChatFormats formats = ConfigUtil.snapshot().chatFormats();
+
+        // Nothing to format with, so show the message as-is.
+        if (formats == null) return message;
+
+        return combine(formats.formatFor(player).resolve(player, message));
+    }
+
+    /*
+        Builds a specific format for a player and message,
+        whether or not it is the format they chat with.
+
+        Used to preview formats in menus.
+     */
+    public static Component getFormat(CompiledChatFormat format, Player player, Component message) {
+        return combine(format.resolve(player, message));
+    }
+
+    /*
+        Creates the ChatRenderer for a single chat message.
+
+        Paper calls a ChatRenderer once per viewer. How much of
+        that work we actually repeat depends on the format:
+
+        - Viewer-invariant formats use Paper's viewerUnaware renderer,
+          which renders once and hands the same Component to everyone.
+
+        - Viewer-aware formats prepare everything that is shared
+          on the first call, then only resolve the relational
+          parts again for each following viewer.
+     */
+    public static ChatRenderer getRenderer(LoadedChatFormats formats, Player sender) {
 
         /*
-            Combine the prefix, name, and suffix+message
-            into the final chat message component.
+            Capture the sender's format now so a reload part way
+            through this message can not mix two different formats.
          */
+        CompiledChatFormat format = formats.formatFor(sender);
+
+        if (!format.isViewerAware()) {
+            return ChatRenderer.viewerUnaware((source, sourceDisplayName, message) -> {
+                long start = System.nanoTime();
+                Component rendered = combine(format.resolve(source, message));
+                MetricsUtil.recordRender(System.nanoTime() - start);
+                return rendered;
+            });
+        }
+
+        return new ChatRenderer() {
+
+            /*
+                The viewer-invariant half of this message.
+
+                Paper renders every viewer of a message on the same
+                thread, so a plain lazily-set field is enough here.
+             */
+            private PreparedChatFormat prepared;
+
+            @Override
+            public @NotNull Component render(
+                    @NotNull Player source, @NotNull Component sourceDisplayName,
+                    @NotNull Component message, @NotNull Audience viewer
+            ) {
+                long start = System.nanoTime();
+                if (prepared == null) prepared = format.prepare(source, message);
+                Component rendered = combine(prepared.resolve(viewer));
+                MetricsUtil.recordRender(System.nanoTime() - start);
+                return rendered;
+            }
+        };
+    }
+
+    /*
+        Combine the prefix, name, and suffix+message
+        into the final chat message component.
+     */
+    private static Component combine(ResolvedChatFormat format) {
         return format.prefix()
                 .append(format.name())
                 .append(format.suffixMessage());
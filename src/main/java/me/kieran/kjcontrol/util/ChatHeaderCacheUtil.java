@@ -0,0 +1,96 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.CachedChatHeader;
+import me.kieran.kjcontrol.record.ChatHeader;
+import me.kieran.kjcontrol.record.CompiledChatFormat;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class ChatHeaderCacheUtil {
+
+    /*
+        The cached header for each player who has chatted.
+
+        Read and written from the async chat threads, so
+        a ConcurrentHashMap is used.
+     */
+    private static final Map<UUID, CachedChatHeader> cache = new ConcurrentHashMap<>();
+
+    /*
+        Returns the header (prefix and interactive name) for a player.
+
+        The header is built the first time a player chats and then
+        reused for every following message, until:
+        - the chat format is reloaded
+        - the player's display name changes
+        - the player's permissions or world change
+        - its TTL runs out (see lifetime())
+
+        A cache hit never touches PlaceholderAPI. A miss renders the
+        header once, which resolves each placeholder a single time.
+     */
+    public static ChatHeader get(CompiledChatFormat format, Player player) {
+        UUID uuid = player.getUniqueId();
+        Component displayName = player.displayName();
+        long now = System.nanoTime();
+
+        CachedChatHeader cached = cache.get(uuid);
+        if (cached != null
+                && cached.format() == format
+                && cached.displayName().equals(displayName)
+                && cached.isValid(now)) {
+            MetricsUtil.headerCacheHit();
+            return cached.header();
+        }
+
+        MetricsUtil.headerCacheMiss();
+        ChatHeader header = format.renderHeader(player);
+
+        /*
+            Don't cache for players who have already left,
+            so nothing is left behind after their quit.
+         */
+        if (player.isOnline()) cache.put(uuid, new CachedChatHeader(format, displayName, now, lifetime(format), header));
+
+        return header;
+    }
+
+    /*
+        Returns how long a header built with this format may be reused.
+
+        This is the shortest placeholder cache TTL of any placeholder
+        in the header, so a cached header is never staler than its
+        placeholders would be on their own. A header with no
+        placeholders never expires, and one using a placeholder that
+        is never cached is rebuilt for every message.
+     */
+    private static long lifetime(CompiledChatFormat format) {
+        long ttl = Long.MAX_VALUE;
+        for (String placeholder : format.headerPlaceholders())
+            ttl = Math.min(ttl, PlaceholderCacheUtil.getTtl(placeholder));
+        return ttl;
+    }
+
+    /*
+        Drops a player's cached header.
+
+        Called when the player quits, and can be called by other
+        code to force a player's header to be rebuilt.
+     */
+    public static void invalidate(UUID uuid) {
+        cache.remove(uuid);
+    }
+
+    /*
+        Drops every cached header, e.g. when the
+        chat format is reloaded.
+     */
+    public static void invalidateAll() {
+        cache.clear();
+    }
+
+}
@@ -0,0 +1,213 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.ChatHistoryEntry;
+import me.kieran.kjcontrol.record.ChatHistorySettings;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public final class ChatHistoryUtil {
+
+    // Formats timestamps shown by /kjcontrol history.
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    /*
+        The ring buffer of recent chat lines.
+
+        It has a fixed number of slots. Once it is full, each new
+        line overwrites the oldest one, so memory use stays the
+        same no matter how busy chat is.
+
+        Replaced on the main thread when the capacity changes,
+        and read from the async chat threads, so it is volatile.
+     */
+    private static volatile AtomicReferenceArray<ChatHistoryEntry> buffer = new AtomicReferenceArray<>(0);
+
+    /*
+        The total number of lines ever recorded.
+
+        The slot for a new line is (written % capacity), so claiming
+        a slot is a single atomic increment, and the chat threads
+        never have to lock each other out.
+     */
+    private static final AtomicLong written = new AtomicLong();
+
+    /*
+        Reads the chat history settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static ChatHistorySettings build(FileConfiguration config) {
+        boolean enabled = config.getBoolean("chat-history.enabled", false);
+        int capacity = enabled ? Math.max(1, config.getInt("chat-history.capacity", 100)) : 0;
+
+        return new ChatHistorySettings(
+                enabled,
+                capacity,
+                Math.max(0, Math.min(capacity, config.getInt("chat-history.replay-on-join", 10)))
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        The buffer is only replaced if its size changes,
+        so reloading keeps the existing history.
+     */
+    public static void load() {
+        int capacity = ConfigUtil.snapshot().settings().chatHistory().capacity();
+
+        if (capacity != buffer.length()) {
+            buffer = new AtomicReferenceArray<>(capacity);
+            written.set(0);
+        }
+    }
+
+    /*
+        Returns whether chat history is enabled.
+     */
+    public static boolean isEnabled() {
+        return ConfigUtil.snapshot().settings().chatHistory().enabled();
+    }
+
+    /*
+        Records a line of chat.
+
+        Safe to call from any thread. This is called once per
+        message, after every other plugin has had its say.
+     */
+    public static void record(Player sender, String message, boolean global) {
+        AtomicReferenceArray<ChatHistoryEntry> slots = buffer;
+        if (!isEnabled() || slots.length() == 0) return;
+
+        ChatHistoryEntry entry = new ChatHistoryEntry(
+                sender.getUniqueId(),
+                sender.getName(),
+                System.currentTimeMillis(),
+                message,
+                ChatFormatUtil.getFormatVersion(),
+                global
+        );
+
+        record(slots, written, entry);
+    }
+
+    /*
+        Writes a line into the next slot of a ring buffer,
+        overwriting the oldest line once the buffer is full.
+
+        @param written The number of lines ever written into slots
+     */
+    static void record(AtomicReferenceArray<ChatHistoryEntry> slots, AtomicLong written, ChatHistoryEntry entry) {
+        long index = written.getAndIncrement();
+        slots.set((int) (index % slots.length()), entry);
+    }
+
+    /*
+        Returns up to the given number of recent lines,
+        oldest first.
+
+        @param globalOnly Skip lines that were only sent
+                          to nearby players
+     */
+    public static List<ChatHistoryEntry> getRecent(int limit, boolean globalOnly) {
+        return getRecent(buffer, written.get(), limit, globalOnly);
+    }
+
+    /*
+        Reads up to the given number of recent lines
+        from a ring buffer, oldest first.
+
+        @param end The number of lines ever written into slots
+     */
+    static List<ChatHistoryEntry> getRecent(
+            AtomicReferenceArray<ChatHistoryEntry> slots,
+            long end,
+            int limit,
+            boolean globalOnly
+    ) {
+        int capacity = slots.length();
+        if (capacity == 0 || limit <= 0) return List.of();
+
+        long start = Math.max(0, end - capacity);
+
+        List<ChatHistoryEntry> entries = new ArrayList<>(Math.min(limit, capacity));
+        for (long i = end - 1; i >= start && entries.size() < limit; i--) {
+            ChatHistoryEntry entry = slots.get((int) (i % capacity));
+            if (entry == null || (globalOnly && !entry.global())) continue;
+            entries.add(entry);
+        }
+
+        Collections.reverse(entries);
+        return entries;
+    }
+
+    /*
+        Shows a joining player the most recent chat lines.
+
+        Lines sent in local chat are never replayed,
+        as the player may not have been near enough to see them.
+     */
+    public static void replay(Player player) {
+        ChatHistorySettings settings = ConfigUtil.snapshot().settings().chatHistory();
+        if (!settings.enabled() || settings.replayOnJoin() == 0) return;
+
+        for (ChatHistoryEntry entry : getRecent(settings.replayOnJoin(), true))
+            player.sendMessage(render(entry));
+    }
+
+    /*
+        Shows a staff member the most recent chat lines,
+        including local chat, with the time each was sent.
+     */
+    public static void show(CommandSender viewer, int lines) {
+        List<ChatHistoryEntry> entries = getRecent(lines, false);
+        if (entries.isEmpty()) {
+            viewer.sendMessage(Component.text("No chat history to show.", NamedTextColor.GRAY));
+            return;
+        }
+
+        for (ChatHistoryEntry entry : entries) {
+            Component time = Component.text("[" + TIME_FORMAT.format(Instant.ofEpochMilli(entry.timestamp())) + "] ",
+                    NamedTextColor.DARK_GRAY);
+            if (!entry.global()) time = time.append(Component.text("(local) ", NamedTextColor.DARK_GRAY));
+
+            viewer.sendMessage(time.append(render(entry)));
+        }
+    }
+
+    /*
+        Renders a history line into a chat Component.
+
+        If the sender is still online and the chat format has
+        not been reloaded since, the line is rendered exactly
+        as it was first shown. Otherwise the format it was sent
+        with is gone, so a plain "name: message" is used.
+     */
+    private static Component render(ChatHistoryEntry entry) {
+        Player sender = Bukkit.getPlayer(entry.sender());
+
+        if (sender != null && ChatFormatUtil.isLoaded()
+                && entry.formatVersion() == ChatFormatUtil.getFormatVersion()) {
+            return ChatFormatUtil.getFormat(sender, Component.text(entry.message()));
+        }
+
+        return Component.text(entry.senderName() + ": ", NamedTextColor.GRAY)
+                .append(Component.text(entry.message(), NamedTextColor.WHITE));
+    }
+
+}
@@ -0,0 +1,267 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.ChatLimitSettings;
+import me.kieran.kjcontrol.record.ChatLimitTier;
+import me.kieran.kjcontrol.record.ChatRateState;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class ChatLimitUtil {
+
+    /*
+        The outcome of checking a chat message against the limits.
+     */
+    public enum Result { ALLOWED, RATE_LIMITED, DUPLICATE }
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /*
+        The tier given to players with the bypass permission.
+
+        Compared by identity, so it can never be confused
+        with a tier read from config.yml.
+     */
+    private static final ChatLimitTier UNLIMITED = new ChatLimitTier("unlimited", Integer.MAX_VALUE, "", 0, 0, 0);
+
+    /*
+        The rate limiter state of each player.
+
+        Each player has their own AtomicReference, so threads
+        handling different players never touch the same memory,
+        and threads handling the same player resolve any race
+        with a compare-and-set instead of a lock.
+     */
+    private static final Map<UUID, AtomicReference<ChatRateState>> states = new ConcurrentHashMap<>();
+
+    /*
+        The tier each online player uses.
+
+        Worked out on join, reload and permission changes,
+        so checking a message never checks permissions.
+     */
+    private static final Map<UUID, ChatLimitTier> selectedTiers = new ConcurrentHashMap<>();
+
+    /*
+        Reads the chat limit settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static ChatLimitSettings build(FileConfiguration config) {
+
+        ChatLimitTier defaultTier = readTier("default", config.getConfigurationSection("chat-limits"), null);
+
+        /*
+            Read the permission-based tiers.
+
+            Any option a tier leaves out is taken from the
+            default limits, so small overrides stay short.
+         */
+        List<ChatLimitTier> tiers = new ArrayList<>();
+        ConfigurationSection section = config.getConfigurationSection("chat-limits.tiers");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                ConfigurationSection tier = section.getConfigurationSection(key);
+                if (tier == null) continue;
+
+                if (tier.getString("permission", "").isEmpty()) {
+                    KJControl.getInstance().getComponentLogger().warn(
+                            "config.yml: chat-limits.tiers.{} has no permission and will be ignored", key
+                    );
+                    continue;
+                }
+
+                tiers.add(readTier(key, tier, defaultTier));
+            }
+        }
+        tiers.sort(Comparator.comparingInt(ChatLimitTier::priority).reversed());
+
+        return new ChatLimitSettings(
+                config.getBoolean("chat-limits.enabled", false),
+                config.getString("chat-limits.bypass-permission", "kjcontrol.chat.bypass"),
+                defaultTier,
+                List.copyOf(tiers),
+                ResolveUtil.serializer().deserialize(config.getString(
+                        "chat-limits.rate-limited-message", "<red>You are sending messages too quickly."
+                )),
+                ResolveUtil.serializer().deserialize(config.getString(
+                        "chat-limits.duplicate-message", "<red>Please don't repeat the same message."
+                ))
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        Every player's limiter state is reset, and their
+        tier is worked out again from the new settings.
+     */
+    public static void load() {
+
+        states.clear();
+        selectedTiers.clear();
+
+        if (!isEnabled()) return;
+
+        for (Player player : Bukkit.getOnlinePlayers()) selectTier(player);
+    }
+
+    /*
+        Reads a single tier of limits.
+
+        @param defaults A tier to take any missing option from,
+                        or null to use the built-in defaults
+     */
+    private static ChatLimitTier readTier(String name, ConfigurationSection section, ChatLimitTier defaults) {
+        double burst = defaults == null ? 4 : defaults.burst();
+        double perSecond = defaults == null ? 1 : defaults.perSecond();
+        long duplicateWindow = defaults == null ? TimeUnit.SECONDS.toNanos(5) : defaults.duplicateWindow();
+
+        if (section == null) return new ChatLimitTier(name, 0, "", burst, perSecond, duplicateWindow);
+
+        return new ChatLimitTier(
+                name,
+                section.getInt("priority", 0),
+                section.getString("permission", ""),
+                Math.max(1, section.getDouble("burst", burst)),
+                Math.max(0, section.getDouble("per-second", perSecond)),
+                section.contains("duplicate-window")
+                        ? TimeUnit.MILLISECONDS.toNanos(Math.max(0, section.getLong("duplicate-window")))
+                        : duplicateWindow
+        );
+    }
+
+    /*
+        Returns whether chat limits are enabled.
+     */
+    public static boolean isEnabled() {
+        return ConfigUtil.snapshot().settings().chatLimits().enabled();
+    }
+
+    /*
+        Works out (or re-works out) which tier a player uses.
+
+        Called on join, on reload, and whenever a player's
+        permissions may have changed.
+     */
+    public static void selectTier(Player player) {
+        ChatLimitSettings settings = ConfigUtil.snapshot().settings().chatLimits();
+        if (!settings.enabled()) return;
+
+        String bypassPermission = settings.bypassPermission();
+        ChatLimitTier selected = settings.defaultTier();
+        if (!bypassPermission.isEmpty() && player.hasPermission(bypassPermission)) {
+            selected = UNLIMITED;
+        } else {
+            for (ChatLimitTier tier : settings.tiers()) {
+                if (player.hasPermission(tier.permission())) {
+                    selected = tier;
+                    break;
+                }
+            }
+        }
+
+        selectedTiers.put(player.getUniqueId(), selected);
+    }
+
+    /*
+        Forgets everything held for a player, e.g. when they quit.
+     */
+    public static void forget(UUID uuid) {
+        selectedTiers.remove(uuid);
+        states.remove(uuid);
+    }
+
+    /*
+        Checks whether a player may send a message right now,
+        and uses up one of their messages if so.
+
+        This is a token bucket: each player can send "burst"
+        messages back to back, and earns messages back at
+        "per-second". Blocked messages don't use anything up.
+
+        Safe to call from any number of threads at once.
+     */
+    public static Result check(Player player, String message) {
+        UUID uuid = player.getUniqueId();
+
+        ChatLimitTier tier = selectedTiers.get(uuid);
+        if (tier == null) {
+            selectTier(player);
+            tier = selectedTiers.getOrDefault(uuid, ConfigUtil.snapshot().settings().chatLimits().defaultTier());
+        }
+        if (tier == UNLIMITED) return Result.ALLOWED;
+
+        String normalised = message.strip().toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+
+        AtomicReference<ChatRateState> reference = states.get(uuid);
+        if (reference == null) {
+            /*
+                Don't create state for players who have already left,
+                as nothing would ever remove it.
+             */
+            if (!player.isOnline()) return Result.ALLOWED;
+
+            ChatLimitTier initial = tier;
+            reference = states.computeIfAbsent(uuid, key ->
+                    new AtomicReference<>(new ChatRateState(initial.burst(), now, null, 0))
+            );
+        }
+
+        return consume(reference, tier, normalised, now);
+    }
+
+    /*
+        Runs one message through a player's token bucket.
+
+        Works out the new state and tries to swap it in. If another
+        thread changed this player's state in the meantime, the swap
+        fails and we simply try again with the state it left behind.
+
+        @param normalised The message, stripped and lower-cased
+        @param now        The System.nanoTime() the message was sent at
+     */
+    static Result consume(AtomicReference<ChatRateState> reference, ChatLimitTier tier, String normalised, long now) {
+        while (true) {
+            ChatRateState current = reference.get();
+
+            if (tier.duplicateWindow() > 0
+                    && normalised.equals(current.lastMessage())
+                    && now - current.lastSentAt() < tier.duplicateWindow()) {
+                return Result.DUPLICATE;
+            }
+
+            double elapsed = Math.max(0, now - current.refilledAt());
+            double tokens = Math.min(tier.burst(), current.tokens() + elapsed * tier.perSecond() / NANOS_PER_SECOND);
+            if (tokens < 1) return Result.RATE_LIMITED;
+
+            ChatRateState next = new ChatRateState(tokens - 1, Math.max(now, current.refilledAt()), normalised, now);
+            if (reference.compareAndSet(current, next)) return Result.ALLOWED;
+        }
+    }
+
+    /*
+        Returns the message sent to a player when
+        their chat message was blocked.
+     */
+    public static Component getBlockedMessage(Result result) {
+        ChatLimitSettings settings = ConfigUtil.snapshot().settings().chatLimits();
+        return result == Result.DUPLICATE ? settings.duplicateMessage() : settings.rateLimitedMessage();
+    }
+
+}
@@ -0,0 +1,372 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.ChatLogEntry;
+import me.kieran.kjcontrol.record.ChatLogSettings;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+public final class ChatLogUtil {
+
+    // Formats the timestamp at the start of each log line.
+    private static final DateTimeFormatter LINE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // Formats the timestamp in the name of rotated log files.
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd-HHmmss").withZone(ZoneId.systemDefault());
+
+    // BufferedWriter.newLine() writes the platform line separator, which is always ASCII.
+    private static final int LINE_SEPARATOR_BYTES = System.lineSeparator().length();
+
+    /*
+        Lines waiting to be written.
+
+        A lock-free queue, so logging a chat message costs the
+        chat thread a single offer and nothing else. Formatting
+        and disk IO all happen on the writer thread.
+     */
+    private static final Queue<ChatLogEntry> queue = new ConcurrentLinkedQueue<>();
+
+    /*
+        Whether lines are being accepted for the writer.
+
+        Set when a writer starts, and cleared if it fails,
+        so chat stops queueing lines nothing will write.
+     */
+    private static volatile boolean enabled;
+
+    /*
+        The newest writer, or null if there is none.
+
+        A writer that is still stopping is kept here rather than
+        forgotten, so the next writer can wait for it to finish.
+     */
+    private static volatile Writer writer;
+
+    /*
+        Reads the chat log settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static ChatLogSettings build(FileConfiguration config) {
+        return new ChatLogSettings(
+                config.getBoolean("chat-log.enabled", false),
+                TimeUnit.MILLISECONDS.toNanos(Math.max(50, config.getLong("chat-log.flush-interval", 1000))),
+                Math.max(0, config.getLong("chat-log.max-size", 10)) * 1024 * 1024,
+                TimeUnit.HOURS.toMillis(Math.max(0, config.getLong("chat-log.rotate-every", 24)))
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        If the chat log settings haven't changed (e.g. a reload
+        that only touched chat-format.yml), the running writer
+        is simply kept.
+
+        Otherwise the old writer is asked to stop and a new one
+        is started with the new settings. Nothing here waits on
+        the disk: the new writer waits for the old one to write
+        what is still queued before it opens the log, so a reload
+        never loses lines and never stalls the main thread.
+     */
+    public static void load() {
+        KJControl plugin = KJControl.getInstance();
+
+        ChatLogSettings settings = ConfigUtil.snapshot().settings().chatLog();
+        Writer previous = writer;
+
+        if (previous != null && previous.running && previous.thread.isAlive() && previous.settings.equals(settings)) return;
+
+        if (previous != null) previous.stop();
+        enabled = settings.enabled();
+
+        /*
+            A stopping writer is kept (even when logging is now
+            disabled), so onDisable, or the next writer, can still
+            wait for it to finish.
+         */
+        if (!enabled) return;
+
+        Writer next = new Writer(
+                settings,
+                plugin.getDataFolder().toPath().resolve("logs"),
+                previous != null && previous.thread.isAlive() ? previous : null
+        );
+        writer = next;
+        next.thread.start();
+    }
+
+    /*
+        Returns whether chat logging is enabled.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+        Stops the writer thread and waits (up to 5 seconds) for it
+        to write everything still in the queue.
+
+        This blocks, so it is only called when the plugin is disabled.
+     */
+    public static void shutdown() {
+        Writer stopping = writer;
+        if (stopping == null) return;
+
+        enabled = false;
+        stopping.stop();
+
+        try {
+            stopping.thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        writer = null;
+    }
+
+    /*
+        Queues a chat message to be logged.
+
+        Safe to call from any thread.
+     */
+    public static void logChat(Player player, String message) {
+        if (enabled) queue.offer(new ChatLogEntry(
+                System.currentTimeMillis(), ChatLogEntry.Type.CHAT, player.getUniqueId(), player.getName(), message
+        ));
+    }
+
+    /*
+        Queues a join or quit to be logged.
+     */
+    public static void logConnection(Player player, ChatLogEntry.Type type) {
+        if (enabled) queue.offer(new ChatLogEntry(
+                System.currentTimeMillis(), type, player.getUniqueId(), player.getName(), null
+        ));
+    }
+
+    /*
+        A single writer thread, with its own settings and stop flag.
+
+        Every flush interval it drains the whole queue into the log
+        in one batch and flushes once, then checks whether the log
+        needs rotating. When asked to stop, it drains one final time.
+     */
+    private static final class Writer implements Runnable {
+
+        private final ChatLogSettings settings;
+        private final Path directory;
+        private final Path current;
+
+        /*
+            Holds the time (epoch ms) the current log was started.
+
+            Kept in its own file because file creation times can't
+            be relied on: many Linux filesystems report the last
+            modified time instead.
+         */
+        private final Path openedAtFile;
+
+        // The writer this one replaced, if it was still finishing.
+        private Writer previous;
+
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Writer(ChatLogSettings settings, Path directory, Writer previous) {
+            this.settings = settings;
+            this.directory = directory;
+            this.current = directory.resolve("chat.log");
+            this.openedAtFile = directory.resolve("chat.log.opened");
+            this.previous = previous;
+            this.thread = new Thread(this, "KJControl Chat Log");
+            this.thread.setDaemon(true);
+        }
+
+        /*
+            Asks this writer to stop once it has written
+            everything still queued. Does not wait for it.
+         */
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            if (previous != null) {
+                try {
+                    previous.thread.join();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                previous = null;
+            }
+
+            BufferedWriter out = null;
+
+            try {
+                Files.createDirectories(directory);
+
+                long size = Files.exists(current) ? Files.size(current) : 0;
+                long openedAt = size > 0 ? readOpenedAt() : markOpened(System.currentTimeMillis());
+                out = open();
+
+                while (true) {
+                    boolean stopping = !running;
+
+                    ChatLogEntry entry;
+                    boolean wrote = false;
+                    while ((entry = queue.poll()) != null) {
+                        String line = format(entry);
+                        out.write(line);
+                        out.newLine();
+                        size += utf8Length(line) + LINE_SEPARATOR_BYTES;
+                        wrote = true;
+                    }
+                    if (wrote) out.flush();
+
+                    if (stopping) break;
+
+                    long now = System.currentTimeMillis();
+                    long maxSize = settings.maxSize();
+                    long rotateEvery = settings.rotateEvery();
+                    if ((maxSize > 0 && size >= maxSize) || (rotateEvery > 0 && now - openedAt >= rotateEvery && size > 0)) {
+                        out.close();
+                        rotate(now);
+                        out = open();
+                        size = 0;
+                        openedAt = markOpened(now);
+                    }
+
+                    LockSupport.parkNanos(settings.flushInterval());
+                }
+            } catch (IOException e) {
+                KJControl.getInstance().getComponentLogger().error("Chat log writer failed - chat is no longer being logged");
+                KJControl.getInstance().getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+
+                // A newer writer may already have taken over, so only stop logging if this is still the current one.
+                if (writer == this) {
+                    enabled = false;
+                    queue.clear();
+                }
+            } finally {
+                if (out != null) {
+                    try {
+                        out.close();
+                    } catch (IOException ignored) {
+                        // Nothing more can be done if closing fails.
+                    }
+                }
+            }
+        }
+
+        private BufferedWriter open() throws IOException {
+            return Files.newBufferedWriter(
+                    current, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+        }
+
+        /*
+            Returns when the current log was started, or now
+            if that was never recorded (e.g. a log written by an
+            older version of KJControl).
+         */
+        private long readOpenedAt() throws IOException {
+            if (Files.exists(openedAtFile)) {
+                try {
+                    return Long.parseLong(Files.readString(openedAtFile).strip());
+                } catch (NumberFormatException ignored) {
+                    // Fall through and start counting from now.
+                }
+            }
+            return markOpened(System.currentTimeMillis());
+        }
+
+        private long markOpened(long openedAt) throws IOException {
+            Files.writeString(openedAtFile, String.valueOf(openedAt));
+            return openedAt;
+        }
+
+        /*
+            Moves the current log aside as a gzip-compressed file,
+            e.g. "chat-2025-01-31-235959.log.gz", so a fresh log
+            can be started.
+
+            If a log was already rotated in the same second, a
+            counter is added ("chat-2025-01-31-235959-1.log.gz"),
+            and CREATE_NEW makes sure an archive is never overwritten.
+         */
+        private void rotate(long now) throws IOException {
+            String name = "chat-" + FILE_TIME.format(Instant.ofEpochMilli(now));
+            Path rotated = directory.resolve(name + ".log.gz");
+            for (int i = 1; Files.exists(rotated); i++) rotated = directory.resolve(name + "-" + i + ".log.gz");
+
+            try (InputStream in = Files.newInputStream(current);
+                 OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(rotated, StandardOpenOption.CREATE_NEW))) {
+                in.transferTo(gzip);
+            }
+
+            Files.delete(current);
+        }
+    }
+
+    /*
+        Returns how many bytes a line takes up in UTF-8,
+        without encoding it.
+     */
+    private static int utf8Length(String line) {
+        int bytes = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < line.length() && Character.isLowSurrogate(line.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /*
+        Formats an entry as a single line of plain text.
+
+        e.g. "[2025-01-31 23:59:59] CHAT Steve (uuid): hello"
+     */
+    private static String format(ChatLogEntry entry) {
+        StringBuilder line = new StringBuilder(64)
+                .append('[').append(LINE_TIME.format(Instant.ofEpochMilli(entry.timestamp()))).append("] ")
+                .append(entry.type()).append(' ')
+                .append(entry.name()).append(" (").append(entry.player()).append(')');
+
+        if (entry.message() != null) line.append(": ").append(entry.message());
+
+        return line.toString();
+    }
+
+}
@@ -1,22 +1,84 @@
 package me.kieran.kjcontrol.util;
 
 import com.mojang.brigadier.Command;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
 import io.papermc.paper.command.brigadier.CommandSourceStack;
-import me.kieran.kjcontrol.KJControl;
 import me.kieran.kjcontrol.menu.KJControlMenu;
+import me.kieran.kjcontrol.menu.PaginatedMenu;
 import me.kieran.kjcontrol.record.HelpEntry;
+import me.kieran.kjcontrol.record.MenuDefinition;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CommandUtil {
 
+    /*
+        Define the help entries for each subcommand.
+
+        Each entry includes:
+        - The command
+        - A short description
+        - An optional permission
+
+        There must be no more than 64 entries, as the help
+        cache uses one bit of a long for each.
+     */
+    private static final List<HelpEntry> HELP_ENTRIES = List.of(
+            new HelpEntry(
+                    "/kjcontrol",
+                    "opens the plugin menu",
+                    "kjcontrol.admin"
+            ),
+            new HelpEntry(
+                    "/kjcontrol preview",
+                    "shows you a preview of the chat format",
+                    "kjcontrol.preview"
+            ),
+            new HelpEntry(
+                    "/kjcontrol reload",
+                    "reloads the plugin files",
+                    "kjcontrol.reload"
+            ),
+            new HelpEntry(
+                    "/kjcontrol history",
+                    "shows recent chat messages",
+                    "kjcontrol.history"
+            ),
+            new HelpEntry(
+                    "/kjcontrol menu",
+                    "opens a menu from menus.yml",
+                    "kjcontrol.menu"
+            ),
+            new HelpEntry(
+                    "/kjcontrol help",
+                    "shows this menu",
+                    null
+            )
+    );
+
+    /*
+        The finished help message for each set of visible entries,
+        keyed by a bitmask of which entries are shown.
+
+        Cleared on reload.
+     */
+    private static final Map<Long, Component> helpCache = new ConcurrentHashMap<>();
+
     /*
         Handles the base /kjcontrol command.
 
@@ -31,7 +93,7 @@ public class CommandUtil {
             This builds an Inventory UI that the player
             can interact with.
          */
-        KJControlMenu menu = new KJControlMenu(KJControl.getInstance());
+        KJControlMenu menu = new KJControlMenu();
 
         /*
             Get the Bukkit CommandSender from Brigadier's
@@ -125,72 +187,135 @@ public class CommandUtil {
         return Command.SINGLE_SUCCESS;
     }
 
+    /*
+        Handles /kjcontrol history [lines]
+
+        Shows the sender the most recent chat lines.
+        Each branch of the command passes its own amount:
+        20 if none was given, otherwise the "lines" argument.
+     */
+    public static int executeHistory(CommandContext<CommandSourceStack> ctx, int lines) {
+        CommandSender sender = ctx.getSource().getSender();
+
+        if (!ChatHistoryUtil.isEnabled()) {
+            sender.sendMessage("Chat history is disabled in config.yml");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        ChatHistoryUtil.show(sender, lines);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /*
+        Handles /kjcontrol menu <name>
+
+        Opens a menu defined in menus.yml.
+     */
+    public static int executeMenu(CommandContext<CommandSourceStack> ctx) {
+        CommandSender sender = ctx.getSource().getSender();
+
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage("Only players can do this!");
+            return Command.SINGLE_SUCCESS;
+        }
+
+        String name = StringArgumentType.getString(ctx, "name");
+        MenuDefinition definition = ConfigUtil.snapshot().menus().get(name);
+
+        if (definition == null) {
+            sender.sendMessage(Component.text("There is no menu called " + name, NamedTextColor.RED));
+            return Command.SINGLE_SUCCESS;
+        }
+
+        if (definition.permission() != null && !sender.hasPermission(definition.permission())) {
+            sender.sendMessage(MessagesUtil.noPermissionMessage(definition.permission()));
+            return Command.SINGLE_SUCCESS;
+        }
+
+        player.openInventory(new PaginatedMenu(definition, player).getInventory());
+        return Command.SINGLE_SUCCESS;
+    }
+
+    /*
+        Suggests the names of the menus in menus.yml.
+     */
+    public static CompletableFuture<Suggestions> suggestMenus(
+            CommandContext<CommandSourceStack> ctx, SuggestionsBuilder builder
+    ) {
+        String remaining = builder.getRemainingLowerCase();
+        for (String name : ConfigUtil.snapshot().menus().keySet()) {
+            if (name.toLowerCase(Locale.ROOT).startsWith(remaining)) builder.suggest(name);
+        }
+        return builder.buildFuture();
+    }
+
     /*
         Handles /kjcontrol help
 
         Displays a clickable, permission-aware help menu
         listing all available subcommands.
+
+        Which entries a sender sees only depends on which of their
+        permissions they have, and there are only a few different
+        combinations in practice. So the finished message is built
+        once per combination and cached, and running the command is
+        a few permission checks plus a map lookup.
      */
     public static int executeHelp(CommandContext<CommandSourceStack> ctx) {
         // Get the sender of the command
         CommandSender sender = ctx.getSource().getSender();
 
         /*
-            Use a basic MiniMessage instance for rendering
-            colours and formatting in the help menu.
+            Work out which entries the sender can see,
+            as one bit per entry.
          */
-        MiniMessage mm = MiniMessage.miniMessage();
+        long visible = 0;
+        for (int i = 0; i < HELP_ENTRIES.size(); i++) {
+            String permission = HELP_ENTRIES.get(i).permission();
+            if (permission == null || sender.hasPermission(permission)) visible |= 1L << i;
+        }
 
-        /*
-            Start building the help message.
+        // Send the help message for that set of entries.
+        sender.sendMessage(helpCache.computeIfAbsent(visible, CommandUtil::buildHelp));
+        return Command.SINGLE_SUCCESS;
+    }
 
-            Component.empty() gives us a clean base
-            to append lines to.
-         */
-        Component message = Component.empty()
-                .append(mm.deserialize("<gray>-------- <green>KJControl Help</green> --------</gray>\n"));
+    /*
+        Drops every cached help message.
 
-        /*
-            Define the help entries for each subcommand.
+        Called on reload, so a reload always
+        starts from freshly built help messages.
+     */
+    public static void clearHelpCache() {
+        helpCache.clear();
+    }
+
+    /*
+        Builds the help message for one set of visible entries.
 
-            Each entry includes:
-            - The command
-            - A short description
-            - An optional permission
+        @param visible One bit per entry in HELP_ENTRIES,
+                       set if the entry should be shown
+     */
+    private static Component buildHelp(long visible) {
+        /*
+            Use the shared MiniMessage instance for rendering
+            colours and formatting in the help menu.
          */
-        List<HelpEntry> entries = List.of(
-                new HelpEntry(
-                        "/kjcontrol",
-                        "opens the plugin menu",
-                        "kjcontrol.admin"
-                ),
-                new HelpEntry(
-                        "/kjcontrol preview",
-                        "shows you a preview of the chat format",
-                        "kjcontrol.preview"
-                ),
-                new HelpEntry(
-                        "/kjcontrol reload",
-                        "reloads the plugin files",
-                        "kjcontrol.reload"
-                ),
-                new HelpEntry(
-                        "/kjcontrol help",
-                        "shows this menu",
-                        null
-                )
-        );
+        MiniMessage mm = ResolveUtil.serializer();
 
         /*
-            Loop through each help entry and render it
-            only if the sender has permission.
+            Build the whole message with a single builder,
+            rather than copying the message on every append.
          */
-        for (HelpEntry entry : entries) {
+        TextComponent.Builder message = Component.text()
+                .append(mm.deserialize("<gray>-------- <green>KJControl Help</green> --------</gray>\n"));
+
+        for (int i = 0; i < HELP_ENTRIES.size(); i++) {
 
             // Skips commands the sender does not have permission for.
-            if (entry.permission() != null && !sender.hasPermission(entry.permission())) {
-                continue;
-            }
+            if ((visible & (1L << i)) == 0) continue;
+
+            HelpEntry entry = HELP_ENTRIES.get(i);
 
             /*
                 Build a clickable help line.
@@ -210,17 +335,13 @@ public class CommandUtil {
                     ));
 
             // Append the line and a new line to the message.
-            message = message.append(line).append(Component.newline());
+            message.append(line).append(Component.newline());
         }
 
         // Add a footer line to close the help menu.
-        message = message.append(
-                mm.deserialize("<gray>-----------------------------------</gray>")
-        );
+        message.append(mm.deserialize("<gray>-----------------------------------</gray>"));
 
-        // Send the fully-built help message to the sender.
-        sender.sendMessage(message);
-        return Command.SINGLE_SUCCESS;
+        return message.build();
     }
 
 }
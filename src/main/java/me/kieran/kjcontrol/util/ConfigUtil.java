@@ -1,9 +1,30 @@
 package me.kieran.kjcontrol.util;
 
 import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.CompiledFilter;
+import me.kieran.kjcontrol.record.ConfigSnapshot;
+import me.kieran.kjcontrol.record.FeatureSettings;
+import me.kieran.kjcontrol.record.FileLoadTime;
+import me.kieran.kjcontrol.record.LoadedChatFormats;
+import me.kieran.kjcontrol.record.LoadedMessages;
+import me.kieran.kjcontrol.record.MenuDefinition;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public final class ConfigUtil {
 
     /*
@@ -15,28 +36,46 @@ public final class ConfigUtil {
     private static final int LATEST_CONFIG_VERSION = 1;
 
     /*
-        Feature toggle flags read from config.yml.
+        Everything currently loaded from KJControl's files.
 
-        These values control whether optional systems
-        (like chat formatting or messages) are enabled.
+        The snapshot is immutable and only ever replaced as a
+        whole, so the async chat threads can read it without
+        locks. Code should read it once (ConfigUtil.snapshot())
+        and work from that, rather than reading it again for
+        each value, so a reload can never be seen half done.
+     */
+    private static volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
 
-        They are static so they can be accessed from anywhere
-        without passing a ConfigUtil instance around.
+    /*
+        Whether a reload (from a command or the file watcher)
+        is currently running.
      */
-    public static boolean chatFormatEnabled;
-    public static boolean messagesEnabled;
+    private static final AtomicBoolean reloading = new AtomicBoolean();
 
     /*
-        Loads (or reloads) the main config.yml file.
+        Files the watcher saw change while another reload was
+        running. They are loaded as soon as that reload finishes.
+     */
+    private static final Set<String> pendingChanges = ConcurrentHashMap.newKeySet();
+
+    /*
+        Returns the configuration currently in use.
+     */
+    public static ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /*
+        Loads (or reloads) every configuration file.
 
         This method is typically called:
         - when the plugin enables
         - when the plugin is reloaded via command
 
-        It is responsible for:
-        - creating the default config if it doesn't exist
-        - reading feature flags
-        - loading dependent systems based on those flags
+        It is split into two steps:
+        - build() reads and compiles every file into a new snapshot
+        - apply() publishes that snapshot and updates the systems
+          that depend on it
      */
     public static void load() {
 
@@ -44,60 +83,205 @@ public final class ConfigUtil {
         KJControl plugin = KJControl.getInstance();
 
         try {
+            apply(build());
+        } catch (Exception e) {
             /*
-                Ensure the default config.yml exists.
-                If it doesn't, it will be copied from the plugin JAR.
-             */
-            plugin.saveDefaultConfig();
+                Catch any unexpected errors during config loading.
 
-            /*
-                Reload the config.yml from disk.
-                This ensures any changes made by the server owner
-                are applied immediately.
+                This prevents the plugin from crashing and provides
+                useful debugging information in the console.
              */
-            plugin.reloadConfig();
+            plugin.getComponentLogger().error("config.yml failed to load.");
+            plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+        }
 
-            /*
-                Read the configuration version number.
-                This allows us to warn if the config is outdated.
-             */
-            int configVersion = plugin.getConfig().getInt("config-version");
-            if (configVersion != LATEST_CONFIG_VERSION) {
-                plugin.getComponentLogger().warn(
-                        "KJControl/config.yml is out of date. Please regenerate to avoid unexpected behaviour"
-                );
-            }
+    }
 
-            /*
-                Read feature toggles from the configuration.
+    /*
+        Reads and compiles every configuration file into a new snapshot.
 
-                The second argument (true) is the default value
-                used if the path is missing from the config.
-             */
-            chatFormatEnabled = plugin.getConfig().getBoolean("features.enable-chat-format", true);
-            messagesEnabled = plugin.getConfig().getBoolean("features.messages.enabled", true);
+        Nothing live is changed here. The snapshot in use carries
+        on serving chat until the new one is passed to apply().
 
-            /*
-                Conditionally load feature-specific systems
-                based on the configuration values.
+        Because of this, it is safe to call off the main thread.
+     */
+    public static ConfigSnapshot build() {
 
-                This avoids unnecessary file access and logic
-                when features are disabled.
-             */
-            if (chatFormatEnabled) ChatFormatUtil.load();
-            if (messagesEnabled) MessagesUtil.load();
+        KJControl plugin = KJControl.getInstance();
+        List<FileLoadTime> loadTimes = new ArrayList<>();
+        long start = System.nanoTime();
 
-        } catch (Exception e) {
-            /*
-                Catch any unexpected errors during config loading.
+        /*
+            Ensure the default config.yml exists.
+            If it doesn't, it will be copied from the plugin JAR.
+         */
+        plugin.saveDefaultConfig();
 
-                This prevents the plugin from crashing and provides
-                useful debugging information in the console.
-             */
-            plugin.getComponentLogger().error("config.yml failed to load.");
-            plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+        /*
+            Read config.yml from disk.
+
+            This is parsed into its own FileConfiguration rather than
+            reloading the plugin's shared one, so the config in use is
+            not changed until the new snapshot is published.
+         */
+        FileConfiguration config = YamlConfiguration.loadConfiguration(
+                new File(plugin.getDataFolder(), "config.yml")
+        );
+
+        /*
+            Read the configuration version number.
+            This allows us to warn if the config is outdated.
+         */
+        int configVersion = config.getInt("config-version");
+        if (configVersion != LATEST_CONFIG_VERSION) {
+            plugin.getComponentLogger().warn(
+                    "KJControl/config.yml is out of date. Please regenerate to avoid unexpected behaviour"
+            );
+        }
+
+        /*
+            Read feature toggles from the configuration.
+
+            The second argument is the default value
+            used if the path is missing from the config.
+         */
+        boolean chatFormatEnabled = config.getBoolean("features.enable-chat-format", true);
+        boolean messagesEnabled = config.getBoolean("features.messages.enabled", true);
+        boolean filterEnabled = config.getBoolean("features.enable-filter", false);
+
+        loadTimes.add(new FileLoadTime("config.yml", System.nanoTime() - start));
+
+        /*
+            Conditionally load feature-specific files
+            based on the configuration values.
+
+            This avoids unnecessary file access and logic
+            when features are disabled.
+         */
+        LoadedChatFormats chatFormats = null;
+        if (chatFormatEnabled) {
+            start = System.nanoTime();
+            chatFormats = ChatFormatUtil.build();
+            loadTimes.add(new FileLoadTime("chat-format.yml", System.nanoTime() - start));
+        }
+
+        LoadedMessages messages = null;
+        if (messagesEnabled) {
+            start = System.nanoTime();
+            messages = MessagesUtil.build(config);
+            loadTimes.add(new FileLoadTime("messages.yml", System.nanoTime() - start));
+        }
+
+        CompiledFilter filter = null;
+        if (filterEnabled) {
+            start = System.nanoTime();
+            filter = FilterUtil.build();
+            loadTimes.add(new FileLoadTime("filter.yml", System.nanoTime() - start));
         }
 
+        /*
+            Read the settings of every subsystem configured in
+            config.yml, so they are published in the same write
+            as everything else.
+         */
+        FeatureSettings settings = new FeatureSettings(
+                PlaceholderCacheUtil.build(config),
+                PlaceholderSnapshotUtil.build(config),
+                LocalChatUtil.build(config),
+                ChatLimitUtil.build(config),
+                ChatHistoryUtil.build(config),
+                ChatLogUtil.build(config),
+                JoinQuitUtil.build(config),
+                FileWatcherUtil.build(config)
+        );
+
+        // Menus are always loaded, as they are only used on demand.
+        start = System.nanoTime();
+        Map<String, MenuDefinition> menus = MenuUtil.build();
+        loadTimes.add(new FileLoadTime("menus.yml", System.nanoTime() - start));
+
+        return new ConfigSnapshot(
+                config, chatFormatEnabled, messagesEnabled, filterEnabled,
+                chatFormats, messages, filter, menus, settings, List.copyOf(loadTimes)
+        );
+    }
+
+    /*
+        Publishes a new snapshot, then reloads the systems
+        that keep their own state.
+
+        This MUST be called on the main thread.
+     */
+    public static void apply(ConfigSnapshot next) {
+
+        /*
+            Send any held back join/quit summaries while the old
+            settings and messages are still in use.
+         */
+        JoinQuitUtil.flushPending();
+
+        // The single write that switches every reader to the new files.
+        snapshot = next;
+
+        /*
+            Headers built with the old formats are now stale.
+            Drop them so their memory is freed straight away.
+         */
+        ChatHeaderCacheUtil.invalidateAll();
+
+        /*
+            Work out which format each online player uses.
+
+            Selection only happens here, on join, and when a
+            player's permissions change, never per message.
+         */
+        ChatFormatUtil.selectFormats();
+
+        /*
+            Clear any cached placeholder values, so a reload
+            always starts from fresh placeholder values.
+         */
+        PlaceholderCacheUtil.load();
+
+        /*
+            Restart placeholder snapshots (if enabled).
+
+            This has to come after the snapshot is published,
+            as the chat format decides which placeholders are needed.
+         */
+        PlaceholderSnapshotUtil.load();
+
+        // Rebuild the index of player positions for local chat.
+        LocalChatUtil.load();
+
+        /*
+            Reset every player's rate limit and
+            work out their chat limit tier again.
+         */
+        ChatLimitUtil.load();
+
+        // Resize the chat history, if its capacity changed.
+        ChatHistoryUtil.load();
+
+        /*
+            Restart the chat log writer with the new settings.
+            Anything already queued is written first.
+         */
+        ChatLogUtil.load();
+
+        // Start the join/quit summary windows again.
+        JoinQuitUtil.load();
+
+        // Start, stop or keep the file watcher.
+        FileWatcherUtil.load();
+
+        // Rebuild the menu item templates.
+        MenuUtil.load();
+
+        // Rebuild the help message the next time it is asked for.
+        CommandUtil.clearHelpCache();
+
+        MetricsUtil.markReload();
     }
 
     /*
@@ -105,42 +289,212 @@ public final class ConfigUtil {
         provides feedback to the command sender.
 
         This is typically called by a reload command.
+
+        Reading and compiling the files happens on a background
+        thread, so a slow disk can't cause a tick spike. Only the
+        switch to the new snapshot happens on the main thread.
+        The sender is then told how long each file took.
      */
     public static void load(CommandSender player) {
 
         // Get the plugin instance for logging and messaging.
         KJControl plugin = KJControl.getInstance();
 
-        try {
-            /*
-                Call the main load() method to actually reload
-                the configuration and dependent systems.
-             */
-            load();
+        /*
+            Only one reload runs at a time. A second reload while
+            the first is still reading files would just repeat it.
+         */
+        if (!reloading.compareAndSet(false, true)) {
+            player.sendMessage(Component.text("A reload is already in progress.", NamedTextColor.RED));
+            return;
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            long start = System.nanoTime();
+            ConfigSnapshot next;
+
+            try {
+                next = build();
+            } catch (Exception e) {
+                finishReload();
 
-            /*
-                If the reload was triggered by a player,
-                send them a confirmation message.
-             */
-            if (player instanceof Player) {
-                player.sendMessage("Config reloaded successfully!");
-                // Log who reloaded the config for auditing purposes.
-                plugin.getComponentLogger().info("{} reloaded the config!", player.getName());
-            } else {
                 /*
-                    If the reload was triggered by console,
-                    just log a generic success message.
+                    If something goes wrong during reload,
+                    inform the player (if applicable) and log the error.
+                    The configuration in use is left untouched.
                  */
-                plugin.getComponentLogger().info("Config reloaded successfully!");
+                if (player instanceof Player) player.sendMessage("Failed to reload config! See console.");
+                plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+                return;
             }
-        } catch (Exception e) {
+
+            long buildTime = System.nanoTime() - start;
+
+            // The plugin may have been disabled while the files were being read.
+            if (!plugin.isEnabled()) {
+                finishReload();
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    long applyStart = System.nanoTime();
+                    apply(next);
+                    long applyTime = System.nanoTime() - applyStart;
+
+                    player.sendMessage(report(next, buildTime, applyTime));
+
+                    if (player instanceof Player) {
+                        // Log who reloaded the config for auditing purposes.
+                        plugin.getComponentLogger().info("{} reloaded the config!", player.getName());
+                    }
+                } catch (Exception e) {
+                    if (player instanceof Player) player.sendMessage("Failed to reload config! See console.");
+                    plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+                } finally {
+                    finishReload();
+                }
+            });
+        });
+    }
+
+    /*
+        Reloads only the files that changed on disk.
+
+        Called by the file watcher, off the main thread.
+
+        - config.yml affects everything, so it triggers a full reload
+        - chat-format.yml, messages.yml, filter.yml and menus.yml are each
+          rebuilt on their own, and swapped into the current snapshot
+          without touching anything else
+
+        This takes the same guard as a reload from a command. If one
+        is already running, the files are queued and loaded as soon
+        as it finishes, so a change is never lost or applied over a
+        full reload that is still in progress.
+     */
+    public static void reloadChanged(Set<String> changed) {
+        KJControl plugin = KJControl.getInstance();
+        if (!plugin.isEnabled()) return;
+
+        pendingChanges.addAll(changed);
+        if (pendingChanges.isEmpty() || !reloading.compareAndSet(false, true)) return;
+
+        Set<String> files = Set.copyOf(pendingChanges);
+        pendingChanges.removeAll(files);
+
+        try {
+            if (files.contains("config.yml")) {
+                ConfigSnapshot next = build();
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    try {
+                        apply(next);
+                        plugin.getComponentLogger().info("config.yml changed - reloaded all files");
+                    } finally {
+                        finishReload();
+                    }
+                });
+                return;
+            }
+
+            ConfigSnapshot current = snapshot;
+
             /*
-                If something goes wrong during reload,
-                inform the player (if applicable) and log the error.
+                Build each changed file now, off the main thread.
+                Files for disabled features are skipped.
              */
-            if (player instanceof Player) player.sendMessage("Failed to reload config! See console.");
+            long start = System.nanoTime();
+            boolean chatFormatChanged = files.contains("chat-format.yml") && current.chatFormatEnabled();
+            boolean messagesChanged = files.contains("messages.yml") && current.messagesEnabled();
+            boolean filterChanged = files.contains("filter.yml") && current.filterEnabled();
+            boolean menusChanged = files.contains("menus.yml");
+
+            LoadedChatFormats chatFormats = chatFormatChanged ? ChatFormatUtil.build() : null;
+            LoadedMessages messages = messagesChanged ? MessagesUtil.build(current.config()) : null;
+            CompiledFilter filter = filterChanged ? FilterUtil.build() : null;
+            Map<String, MenuDefinition> menus = menusChanged ? MenuUtil.build() : null;
+            long buildTime = System.nanoTime() - start;
+
+            if (!chatFormatChanged && !messagesChanged && !filterChanged && !menusChanged) {
+                finishReload();
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                try {
+                    /*
+                        Swap the new parts into whatever snapshot is in
+                        use now. All swaps happen on the main thread,
+                        so nothing published in between is lost.
+                     */
+                    ConfigSnapshot next = snapshot;
+                    if (chatFormatChanged) next = next.withChatFormats(chatFormats);
+                    if (messagesChanged) next = next.withMessages(messages);
+                    if (filterChanged) next = next.withFilter(filter);
+                    if (menusChanged) next = next.withMenus(menus);
+
+                    // Held back join/quit summaries go out with the messages they were held under.
+                    if (messagesChanged) JoinQuitUtil.flushPending();
+
+                    snapshot = next;
+                    MetricsUtil.markReload();
+
+                    if (chatFormatChanged) {
+                        ChatHeaderCacheUtil.invalidateAll();
+                        ChatFormatUtil.selectFormats();
+                        PlaceholderSnapshotUtil.load();
+                    }
+
+                    plugin.getComponentLogger().info("Reloaded {} ({})", String.join(", ", files), millis(buildTime));
+                } finally {
+                    finishReload();
+                }
+            });
+        } catch (Exception e) {
+            finishReload();
+            plugin.getComponentLogger().error("Failed to reload changed files");
             plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
         }
     }
 
+    /*
+        Marks the running reload as finished, then loads any
+        files the watcher saw change while it was running.
+     */
+    private static void finishReload() {
+        reloading.set(false);
+
+        KJControl plugin = KJControl.getInstance();
+        if (pendingChanges.isEmpty() || !plugin.isEnabled()) return;
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> reloadChanged(Set.of()));
+    }
+
+    /*
+        Builds the reload report, e.g.
+
+        Config reloaded successfully! (4.21 ms)
+         - config.yml: 0.52 ms
+         - chat-format.yml: 3.10 ms
+         - apply (main thread): 0.59 ms
+     */
+    private static Component report(ConfigSnapshot snapshot, long buildTime, long applyTime) {
+        Component report = Component.text("Config reloaded successfully! ", NamedTextColor.GREEN)
+                .append(Component.text("(" + millis(buildTime + applyTime) + ")", NamedTextColor.GRAY));
+
+        for (FileLoadTime time : snapshot.loadTimes()) {
+            report = report.append(Component.newline())
+                    .append(Component.text(" - " + time.file() + ": ", NamedTextColor.GRAY))
+                    .append(Component.text(millis(time.nanos()), NamedTextColor.WHITE));
+        }
+
+        return report.append(Component.newline())
+                .append(Component.text(" - apply (main thread): ", NamedTextColor.GRAY))
+                .append(Component.text(millis(applyTime), NamedTextColor.WHITE));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / 1_000_000.0);
+    }
+
 }
@@ -0,0 +1,199 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.FileWatcherSettings;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public final class FileWatcherUtil {
+
+    // The files in the plugin folder that trigger a reload when changed.
+    private static final Set<String> WATCHED_FILES = Set.of(
+            "config.yml", "chat-format.yml", "messages.yml", "filter.yml", "menus.yml"
+    );
+
+    // The watcher thread and the WatchService it is waiting on.
+    private static Thread watcher;
+    private static WatchService service;
+
+    // The settings the running watcher was started with, or null if there is none.
+    private static FileWatcherSettings started;
+
+    /*
+        Reads the auto-reload settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static FileWatcherSettings build(FileConfiguration config) {
+        return new FileWatcherSettings(
+                config.getBoolean("auto-reload.enabled", false),
+                Math.max(50, config.getLong("auto-reload.debounce", 500))
+        );
+    }
+
+    /*
+        Called after a new snapshot is published, starting
+        or stopping the watcher thread as needed.
+
+        The watcher is left running if its settings haven't
+        changed, so a reload triggered by the watcher itself
+        doesn't restart it.
+     */
+    public static void load() {
+        FileWatcherSettings settings = ConfigUtil.snapshot().settings().fileWatcher();
+
+        if (watcher != null && settings.equals(started)) return;
+
+        shutdown();
+
+        if (!settings.enabled()) return;
+
+        KJControl plugin = KJControl.getInstance();
+        try {
+            WatchService watchService = FileSystems.getDefault().newWatchService();
+            Path dataFolder = plugin.getDataFolder().toPath();
+            dataFolder.register(
+                    watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+            );
+
+            /*
+                Locale files live in their own folder, and any change
+                there reloads the messages. The folder is optional, so
+                if it doesn't exist yet it is watched once it is created.
+             */
+            WatchKey langKey = watchLangFolder(watchService, dataFolder);
+
+            service = watchService;
+            started = settings;
+            watcher = new Thread(() -> run(watchService, dataFolder, langKey, settings.debounce()), "KJControl File Watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        } catch (IOException e) {
+            plugin.getComponentLogger().error("Failed to watch the plugin folder - auto-reload is disabled");
+            plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+        }
+    }
+
+    /*
+        Stops the watcher thread.
+
+        Closing the WatchService wakes the thread up, and it
+        exits straight away. Called on reload (if the settings
+        changed) and when the plugin is disabled.
+     */
+    public static void shutdown() {
+        Thread thread = watcher;
+        if (thread == null) return;
+
+        try {
+            service.close();
+        } catch (IOException ignored) {
+            // The thread is interrupted below either way.
+        }
+        thread.interrupt();
+
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        watcher = null;
+        service = null;
+        started = null;
+    }
+
+    /*
+        The watcher thread.
+
+        Editors often save a file as several writes in quick
+        succession. Changes are collected until the folder has
+        been quiet for the debounce time, then every changed
+        file is reloaded together, once.
+     */
+    private static void run(WatchService watchService, Path dataFolder, WatchKey langKey, long debounce) {
+        Set<String> changed = new HashSet<>();
+
+        try {
+            while (true) {
+                WatchKey key = changed.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(debounce, TimeUnit.MILLISECONDS);
+
+                // Quiet for the whole debounce time - load what changed.
+                if (key == null) {
+                    ConfigUtil.reloadChanged(Set.copyOf(changed));
+                    changed.clear();
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path path)) continue;
+
+                    if (key == langKey) {
+                        if (path.toString().endsWith(".yml")) changed.add("messages.yml");
+                    } else if (WATCHED_FILES.contains(path.toString())) {
+                        changed.add(path.toString());
+                    } else if (langKey == null && path.toString().equals("lang")) {
+                        /*
+                            The lang folder was just created. Start watching
+                            it, and reload the messages in case locale files
+                            were written into it before it was registered.
+                         */
+                        langKey = watchLangFolder(watchService, dataFolder);
+                        if (langKey != null) changed.add("messages.yml");
+                    }
+                }
+
+                /*
+                    A key stops being valid when its folder is deleted.
+                    Losing the lang folder just stops watching it (and
+                    reloads the messages without it). Losing the plugin
+                    folder ends the watcher.
+                 */
+                if (!key.reset()) {
+                    if (key != langKey) break;
+
+                    langKey = null;
+                    changed.add("messages.yml");
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+            // The watcher is being shut down.
+        }
+    }
+
+    /*
+        Starts watching the lang folder, if it exists.
+
+        Returns its WatchKey, or null if there is no lang
+        folder (or it could not be watched).
+     */
+    private static WatchKey watchLangFolder(WatchService watchService, Path dataFolder) {
+        Path langFolder = dataFolder.resolve("lang");
+        if (!Files.isDirectory(langFolder)) return null;
+
+        try {
+            return langFolder.register(
+                    watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+            );
+        } catch (IOException e) {
+            KJControl.getInstance().getComponentLogger().warn("Failed to watch the lang folder for changes");
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,376 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.CompiledFilter;
+import me.kieran.kjcontrol.record.FilterResult;
+import net.kyori.adventure.text.Component;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+public final class FilterUtil {
+
+    /*
+        The latest version of filter.yml that this plugin expects.
+     */
+    private static final int LATEST_CONFIG_VERSION = 1;
+
+    // Reference to the filter.yml file on disk.
+    private static File file;
+
+    /*
+        Reads filter.yml and compiles its word lists into a
+        single Aho-Corasick automaton.
+
+        Compiling up front means each chat message is matched
+        against every word in one pass, no matter how long
+        the word lists are.
+
+        Nothing live is changed here: the result is published
+        as part of a ConfigSnapshot. If the file can't be read,
+        the filter that is currently loaded (if any) is kept.
+     */
+    public static CompiledFilter build() {
+        KJControl plugin = KJControl.getInstance();
+
+        try {
+            if (file == null) {
+                file = new File(plugin.getDataFolder(), "filter.yml");
+            }
+
+            if (!file.exists()) {
+                plugin.saveResource("filter.yml", false);
+            }
+
+            FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+
+            int configVersion = config.getInt("filter-version");
+            if (configVersion != LATEST_CONFIG_VERSION) {
+                plugin.getComponentLogger().warn(
+                        "KJControl/filter.yml is out of date. Please regenerate to avoid unexpected behaviour"
+                );
+            }
+
+            /*
+                Maps every char to the char it is matched as.
+
+                Built once per load from the normalisation options,
+                so normalising a message is a single array lookup per char.
+             */
+            char[] fold = buildFoldTable(
+                    config.getBoolean("normalise.unicode", true),
+                    config.getBoolean("normalise.leetspeak", true)
+            );
+
+            /*
+                Collect every word with whether it blocks the message.
+
+                Words are normalised the same way messages are,
+                so "Bad" in filter.yml still matches "b4d" in chat.
+                A word in both lists is treated as blocked.
+             */
+            Map<String, Boolean> words = new LinkedHashMap<>();
+            for (String word : config.getStringList("censored-words"))
+                words.putIfAbsent(normalise(word, fold), false);
+            for (String word : config.getStringList("blocked-words"))
+                words.put(normalise(word, fold), true);
+            words.remove("");
+
+            String censor = config.getString("censor-character", "*");
+            Component blockedMessage = ResolveUtil.serializer().deserialize(config.getString(
+                    "blocked-message", "<red>Your message contains a blocked word."
+            ));
+
+            plugin.getComponentLogger().info("Filter loaded with {} words", words.size());
+
+            return new CompiledFilter(
+                    Automaton.compile(words),
+                    fold,
+                    censor == null || censor.isEmpty() ? '*' : censor.charAt(0),
+                    config.getBoolean("whole-words", true),
+                    blockedMessage
+            );
+        } catch (Exception e) {
+            plugin.getComponentLogger().error("Failed to load filter.yml");
+            plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+            return ConfigUtil.snapshot().filter();
+        }
+    }
+
+    /*
+        Returns whether a word filter is currently loaded.
+     */
+    public static boolean isLoaded() {
+        return ConfigUtil.snapshot().isFilterLoaded();
+    }
+
+    /*
+        Builds the table used to normalise messages.
+
+        Every char maps to exactly one char, so positions in
+        the normalised text line up with the original message
+        and censoring can replace the original characters.
+
+        - unicode   -> accents are removed and full-width/styled
+                       letters become their plain equivalents
+        - leetspeak -> common number/symbol substitutions become letters
+     */
+    static char[] buildFoldTable(boolean unicode, boolean leetspeak) {
+        char[] table = new char[Character.MAX_VALUE + 1];
+
+        for (int i = 0; i <= Character.MAX_VALUE; i++) {
+            char c = (char) i;
+
+            if (unicode && !Character.isSurrogate(c) && c > 0x7F) {
+                String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD);
+                if (!decomposed.isEmpty()) c = decomposed.charAt(0);
+            }
+
+            c = Character.toLowerCase(c);
+
+            if (leetspeak) {
+                c = switch (c) {
+                    case '0' -> 'o';
+                    case '1', '!', '|' -> 'i';
+                    case '3' -> 'e';
+                    case '4', '@' -> 'a';
+                    case '5', '$' -> 's';
+                    case '7' -> 't';
+                    case '8' -> 'b';
+                    default -> c;
+                };
+            }
+
+            table[i] = c;
+        }
+
+        return table;
+    }
+
+    static String normalise(String word, char[] table) {
+        char[] chars = word.strip().toCharArray();
+        for (int i = 0; i < chars.length; i++) chars[i] = table[chars[i]];
+        return new String(chars);
+    }
+
+    /*
+        An Aho-Corasick automaton over the normalised word list.
+
+        The trie and its failure links are built once at load time.
+        Matching then walks the message a single time, following
+        at most one transition plus failure links per char.
+
+        Transitions are stored in a flat open-addressed hash table
+        of primitive arrays, keyed by (node, char), to keep matching
+        free of boxing and per-node maps.
+     */
+    public static final class Automaton {
+
+        private static final int ROOT = 0;
+
+        private final long[] keys;
+        private final int[] targets;
+        private final int mask;
+
+        /*
+            Per-node data, indexed by node id.
+
+            - fail       -> the node for the longest proper suffix that is also in the trie
+            - output     -> the nearest node along the failure links that ends a word (-1 = none)
+            - wordLength -> length of the word ending exactly at this node (0 = none)
+            - blocking   -> whether the word ending exactly at this node blocks the message
+         */
+        private final int[] fail;
+        private final int[] output;
+        private final int[] wordLength;
+        private final boolean[] blocking;
+
+        private Automaton(long[] keys, int[] targets, int[] fail, int[] output, int[] wordLength, boolean[] blocking) {
+            this.keys = keys;
+            this.targets = targets;
+            this.mask = keys.length - 1;
+            this.fail = fail;
+            this.output = output;
+            this.wordLength = wordLength;
+            this.blocking = blocking;
+        }
+
+        public static Automaton compile(Map<String, Boolean> words) {
+
+            /*
+                Build the trie.
+
+                Maps are fine here: this only runs on load.
+             */
+            List<Map<Character, Integer>> children = new ArrayList<>();
+            List<Integer> lengths = new ArrayList<>();
+            List<Boolean> blocks = new ArrayList<>();
+            children.add(new HashMap<>());
+            lengths.add(0);
+            blocks.add(false);
+
+            for (Map.Entry<String, Boolean> entry : words.entrySet()) {
+                String word = entry.getKey();
+                int node = ROOT;
+
+                for (int i = 0; i < word.length(); i++) {
+                    Integer next = children.get(node).get(word.charAt(i));
+                    if (next == null) {
+                        next = children.size();
+                        children.get(node).put(word.charAt(i), next);
+                        children.add(new HashMap<>());
+                        lengths.add(0);
+                        blocks.add(false);
+                    }
+                    node = next;
+                }
+
+                lengths.set(node, word.length());
+                blocks.set(node, blocks.get(node) || entry.getValue());
+            }
+
+            int size = children.size();
+            int[] fail = new int[size];
+            int[] output = new int[size];
+            int[] wordLength = new int[size];
+            boolean[] blocking = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                wordLength[i] = lengths.get(i);
+                blocking[i] = blocks.get(i);
+            }
+            output[ROOT] = -1;
+
+            /*
+                Work out failure links breadth first, so a node's
+                failure target is always finished before the node.
+
+                Output links skip straight to the next word along the
+                failure chain, so matching only visits nodes that
+                actually end a word.
+             */
+            Queue<Integer> queue = new ArrayDeque<>(children.get(ROOT).values());
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+
+                for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                    char c = entry.getKey();
+                    int child = entry.getValue();
+
+                    int target = ROOT;
+                    if (node != ROOT) {
+                        int f = fail[node];
+                        while (f != ROOT && !children.get(f).containsKey(c)) f = fail[f];
+                        target = children.get(f).getOrDefault(c, ROOT);
+                    }
+
+                    fail[child] = target;
+                    output[child] = wordLength[target] > 0 ? target : output[target];
+                    queue.add(child);
+                }
+            }
+
+            /*
+                Pack every transition into the flat hash table,
+                kept at most half full for short probe sequences.
+             */
+            int capacity = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+            long[] keys = new long[capacity];
+            int[] targets = new int[capacity];
+            Arrays.fill(targets, -1);
+
+            for (int node = 0; node < size; node++) {
+                for (Map.Entry<Character, Integer> entry : children.get(node).entrySet()) {
+                    long key = key(node, entry.getKey());
+                    int slot = slot(key, capacity - 1);
+                    while (targets[slot] != -1) slot = (slot + 1) & (capacity - 1);
+
+                    keys[slot] = key;
+                    targets[slot] = entry.getValue();
+                }
+            }
+
+            return new Automaton(keys, targets, fail, output, wordLength, blocking);
+        }
+
+        public FilterResult filter(String message, char[] table, char censor, boolean wholeWords) {
+            char[] censored = null;
+            int node = ROOT;
+
+            for (int i = 0; i < message.length(); i++) {
+                char c = table[message.charAt(i)];
+
+                int next = next(node, c);
+                while (next == -1 && node != ROOT) {
+                    node = fail[node];
+                    next = next(node, c);
+                }
+                node = next == -1 ? ROOT : next;
+
+                /*
+                    Visit every word that ends at this char: the word
+                    at this node (if any), then each one further along
+                    the output links.
+                 */
+                int match = wordLength[node] > 0 ? node : output[node];
+                for (; match != -1; match = output[match]) {
+                    int start = i - wordLength[match] + 1;
+                    if (wholeWords && !isWholeWord(message, start, i)) continue;
+
+                    if (blocking[match]) return new FilterResult(true, message);
+
+                    // Only copy the message once something actually needs censoring.
+                    if (censored == null) censored = message.toCharArray();
+                    Arrays.fill(censored, start, i + 1, censor);
+                }
+            }
+
+            return new FilterResult(false, censored == null ? message : new String(censored));
+        }
+
+        /*
+            Returns true if the word between start and end (inclusive)
+            is not joined onto other letters on either side.
+
+            The neighbouring chars are checked as typed, not folded:
+            the leetspeak table turns chars like '!', '$' and '1'
+            into letters, which would make "bad!" look like part
+            of a longer word. Digits and punctuation next to a
+            word count as word boundaries.
+         */
+        private static boolean isWholeWord(String message, int start, int end) {
+            if (start > 0 && Character.isLetter(message.charAt(start - 1))) return false;
+            return end + 1 >= message.length() || !Character.isLetter(message.charAt(end + 1));
+        }
+
+        private int next(int node, char c) {
+            long key = key(node, c);
+            int slot = slot(key, mask);
+
+            while (targets[slot] != -1) {
+                if (keys[slot] == key) return targets[slot];
+                slot = (slot + 1) & mask;
+            }
+
+            return -1;
+        }
+
+        private static long key(int node, char c) {
+            return ((long) node << 16) | c;
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        }
+    }
+
+}
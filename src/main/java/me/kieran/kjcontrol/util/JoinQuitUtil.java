@@ -0,0 +1,203 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.JoinQuitSettings;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class JoinQuitUtil {
+
+    // The most names listed in a summary's hover text.
+    private static final int MAX_HOVER_NAMES = 40;
+
+    // Joins and quits are counted and summarised separately.
+    private static final Coalescer joins = new Coalescer(true);
+    private static final Coalescer quits = new Coalescer(false);
+
+    /*
+        Sends anything still waiting to be summarised straight away.
+
+        Called before a new snapshot is published, so the summary
+        uses the settings and messages the joins and quits were
+        counted under. Disabling summaries (or join/quit messages)
+        in a reload can then never swallow ones already held back.
+     */
+    public static void flushPending() {
+        joins.flush();
+        quits.flush();
+    }
+
+    /*
+        Reads the summary settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static JoinQuitSettings build(FileConfiguration config) {
+        return new JoinQuitSettings(
+                config.getBoolean("join-quit-summary.enabled", false),
+                Math.max(1, config.getInt("join-quit-summary.threshold", 5)),
+                Math.max(1, config.getLong("join-quit-summary.window", 3)) * 20L
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        Pending summaries were already sent by flushPending(),
+        so the counting windows simply start again.
+     */
+    public static void load() {
+        joins.reset();
+        quits.reset();
+    }
+
+    /*
+        Returns the summary settings in use.
+     */
+    private static JoinQuitSettings settings() {
+        return ConfigUtil.snapshot().settings().joinQuit();
+    }
+
+    /*
+        Records a join, and returns true if it has been held back
+        to be part of a summary (so no join message should be sent).
+
+        Join events run on the main thread, as does everything here.
+     */
+    public static boolean bufferJoin(Player player) {
+        return settings().enabled() && joins.offer(player.getName());
+    }
+
+    /*
+        Records a quit, and returns true if it has been held back
+        to be part of a summary (so no quit message should be sent).
+     */
+    public static boolean bufferQuit(Player player) {
+        return settings().enabled() && quits.offer(player.getName());
+    }
+
+    /*
+        Counts joins or quits in fixed windows, and holds them
+        back while there are too many to show one by one.
+
+        Summarising starts as soon as a window goes over the
+        threshold. At the end of each window, everything held
+        back is sent as one message. Once a window passes
+        without going over the threshold, messages go back
+        to being sent one by one.
+     */
+    private static final class Coalescer {
+
+        private final boolean join;
+
+        // Joins (or quits) seen in the current counting window.
+        private int count;
+        private long windowStart;
+
+        // Names held back for the next summary, and the task that sends it.
+        private final List<String> pending = new ArrayList<>();
+        private BukkitTask task;
+
+        Coalescer(boolean join) {
+            this.join = join;
+        }
+
+        boolean offer(String name) {
+            JoinQuitSettings settings = settings();
+            long window = settings.window();
+            long now = Bukkit.getCurrentTick();
+
+            if (task == null && now - windowStart >= window) {
+                windowStart = now;
+                count = 0;
+            }
+            count++;
+
+            if (task == null && count <= settings.threshold()) return false;
+
+            pending.add(name);
+            if (task == null) task = Bukkit.getScheduler().runTaskLater(KJControl.getInstance(), this::endWindow, window);
+            return true;
+        }
+
+        /*
+            Called at the end of each summarising window.
+         */
+        private void endWindow() {
+            JoinQuitSettings settings = settings();
+            int held = pending.size();
+            flush();
+
+            if (held > settings.threshold()) {
+                // Still busy - keep summarising for another window.
+                count = 0;
+                windowStart = Bukkit.getCurrentTick();
+                task = Bukkit.getScheduler().runTaskLater(KJControl.getInstance(), this::endWindow, settings.window());
+            } else {
+                task = null;
+                count = 0;
+                windowStart = Bukkit.getCurrentTick();
+            }
+        }
+
+        /*
+            Sends everything held back as a single summary message.
+         */
+        void flush() {
+            if (pending.isEmpty()) return;
+
+            List<String> names = List.copyOf(pending);
+            pending.clear();
+
+            /*
+                The summary text comes from each viewer's locale,
+                while the list of names is the same for everyone.
+             */
+            HoverEvent<Component> hover = HoverEvent.showText(hover(names));
+            Component count = Component.text(names.size());
+
+            MessagesUtil.broadcast(null, bundle -> (join ? bundle.joinSummary() : bundle.quitSummary())
+                    .renderValue(MessagesUtil.SUMMARY_COUNT_TAG, count)
+                    .hoverEvent(hover));
+        }
+
+        void reset() {
+            if (task != null) task.cancel();
+            task = null;
+            pending.clear();
+            count = 0;
+            windowStart = 0;
+        }
+
+        /*
+            Lists the names in a summary, one per line,
+            cut short if there are a lot of them.
+         */
+        private static Component hover(List<String> names) {
+            Component hover = Component.empty();
+
+            int shown = Math.min(names.size(), MAX_HOVER_NAMES);
+            for (int i = 0; i < shown; i++) {
+                if (i > 0) hover = hover.append(Component.newline());
+                hover = hover.append(Component.text(names.get(i), NamedTextColor.GRAY));
+            }
+
+            if (names.size() > shown) {
+                hover = hover.append(Component.newline())
+                        .append(Component.text("and " + (names.size() - shown) + " more", NamedTextColor.DARK_GRAY));
+            }
+
+            return hover;
+        }
+    }
+
+}
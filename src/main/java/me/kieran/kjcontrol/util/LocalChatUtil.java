@@ -0,0 +1,240 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.LocalChatSettings;
+import me.kieran.kjcontrol.record.TrackedPosition;
+import net.kyori.adventure.audience.Audience;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class LocalChatUtil {
+
+    /*
+        The size of a grid cell, as a bit shift of block coordinates.
+
+        4 means 16x16 blocks, so every cell is exactly one chunk.
+     */
+    private static final int CELL_SHIFT = 4;
+
+    /*
+        The spatial index itself.
+
+        world UUID -> packed cell -> players currently in that cell
+
+        Only cells that contain at least one player are kept,
+        so the index grows with the number of players, not with
+        the size of the worlds.
+     */
+    private static final Map<UUID, Map<Long, Set<Player>>> cells = new ConcurrentHashMap<>();
+
+    /*
+        Every tracked player in each world.
+
+        Used instead of the grid when the radius covers more
+        cells than there are players in the world.
+     */
+    private static final Map<UUID, Set<Player>> worlds = new ConcurrentHashMap<>();
+
+    /*
+        The last known position of each tracked player.
+
+        Written on the main thread, read from the async chat threads.
+     */
+    private static final Map<UUID, TrackedPosition> positions = new ConcurrentHashMap<>();
+
+    /*
+        Reads the local chat settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static LocalChatSettings build(FileConfiguration config) {
+        double radius = Math.max(1, config.getDouble("local-chat.radius", 100));
+
+        return new LocalChatSettings(
+                config.getBoolean("local-chat.enabled", false),
+                radius * radius,
+                ((int) Math.ceil(radius) >> CELL_SHIFT) + 1
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        The index is rebuilt from scratch using the current
+        location of every online player, so it is always correct
+        after a reload. This must be called on the main thread.
+     */
+    public static void load() {
+
+        cells.clear();
+        worlds.clear();
+        positions.clear();
+
+        if (!isEnabled()) return;
+
+        for (Player player : Bukkit.getOnlinePlayers()) track(player, player.getLocation());
+    }
+
+    /*
+        Returns whether local chat is enabled.
+     */
+    public static boolean isEnabled() {
+        return ConfigUtil.snapshot().settings().localChat().enabled();
+    }
+
+    /*
+        Records a player's new position.
+
+        Called on the main thread whenever a player joins, moves
+        to a new block, teleports, respawns or changes world.
+        The grid is only touched when the player changes cell,
+        which is a small fraction of movement events.
+     */
+    public static void track(Player player, Location location) {
+        if (!isEnabled() || location.getWorld() == null) return;
+
+        UUID world = location.getWorld().getUID();
+        long cell = cellKey(location.getBlockX() >> CELL_SHIFT, location.getBlockZ() >> CELL_SHIFT);
+
+        TrackedPosition position = new TrackedPosition(world, location.getX(), location.getY(), location.getZ(), cell);
+        TrackedPosition previous = positions.put(player.getUniqueId(), position);
+
+        if (previous != null && previous.world().equals(world) && previous.cell() == cell) return;
+
+        /*
+            Add the player to their new cell before removing them
+            from the old one, so a chat message being built at the
+            same time never misses them completely.
+         */
+        cells.computeIfAbsent(world, uuid -> new ConcurrentHashMap<>())
+                .computeIfAbsent(cell, key -> ConcurrentHashMap.newKeySet())
+                .add(player);
+
+        if (previous == null || !previous.world().equals(world))
+            worlds.computeIfAbsent(world, uuid -> ConcurrentHashMap.newKeySet()).add(player);
+
+        if (previous != null) removeFromGrid(player, previous, !previous.world().equals(world));
+    }
+
+    /*
+        Removes a player from the index, e.g. when they quit.
+     */
+    public static void untrack(Player player) {
+        TrackedPosition previous = positions.remove(player.getUniqueId());
+        if (previous != null) removeFromGrid(player, previous, true);
+    }
+
+    /*
+        Narrows the viewers of a chat message down to the
+        players near the sender.
+
+        Only players who are out of range are removed. Anyone an
+        earlier listener already took out of the set (ignore lists,
+        vanish, chat toggles) stays out, and non-player audiences
+        such as the console are left alone.
+     */
+    public static void narrowViewers(Player source, Set<Audience> viewers) {
+        Set<Player> nearby = new HashSet<>(getNearbyPlayers(source));
+        viewers.removeIf(viewer -> viewer instanceof Player player && !nearby.contains(player));
+    }
+
+    /*
+        Returns every tracked player within the chat radius
+        of the given player, including the player themselves.
+
+        Safe to call from any thread.
+     */
+    public static Collection<Player> getNearbyPlayers(Player source) {
+        TrackedPosition origin = positions.get(source.getUniqueId());
+
+        /*
+            A player who is not tracked yet (e.g. chatting before
+            their join has been handled) only sees their own message.
+         */
+        if (origin == null) return List.of(source);
+
+        Map<Long, Set<Player>> grid = cells.get(origin.world());
+        Set<Player> inWorld = worlds.get(origin.world());
+        if (grid == null || inWorld == null) return List.of(source);
+
+        // Read the settings once, so a reload mid-scan can't mix two radii.
+        LocalChatSettings settings = ConfigUtil.snapshot().settings().localChat();
+        double radiusSquared = settings.radiusSquared();
+        int cellRadius = settings.cellRadius();
+        List<Player> nearby = new ArrayList<>();
+
+        /*
+            Scan whichever is smaller: the cells the radius covers,
+            or the players in the world. A huge radius on a quiet
+            world would otherwise visit thousands of empty cells.
+         */
+        int span = cellRadius * 2 + 1;
+        if ((long) span * span > inWorld.size()) {
+            for (Player player : inWorld) addIfNearby(nearby, player, origin, radiusSquared);
+            return nearby;
+        }
+
+        int originX = (int) (origin.cell() >> 32);
+        int originZ = (int) origin.cell();
+
+        for (int cx = originX - cellRadius; cx <= originX + cellRadius; cx++) {
+            for (int cz = originZ - cellRadius; cz <= originZ + cellRadius; cz++) {
+                Set<Player> players = grid.get(cellKey(cx, cz));
+                if (players == null) continue;
+
+                for (Player player : players) addIfNearby(nearby, player, origin, radiusSquared);
+            }
+        }
+
+        return nearby;
+    }
+
+    /*
+        Adds a player to the result if their last known
+        position is within the chat radius of the origin.
+     */
+    private static void addIfNearby(List<Player> nearby, Player player, TrackedPosition origin, double radiusSquared) {
+        TrackedPosition position = positions.get(player.getUniqueId());
+        if (position != null && position.distanceSquared(origin) <= radiusSquared) nearby.add(player);
+    }
+
+    /*
+        Removes a player from the cell (and optionally the world)
+        they were previously in, dropping anything left empty.
+     */
+    private static void removeFromGrid(Player player, TrackedPosition previous, boolean leftWorld) {
+        Map<Long, Set<Player>> grid = cells.get(previous.world());
+        if (grid != null) {
+            grid.computeIfPresent(previous.cell(), (key, players) -> {
+                players.remove(player);
+                return players.isEmpty() ? null : players;
+            });
+        }
+
+        if (leftWorld) {
+            worlds.computeIfPresent(previous.world(), (uuid, players) -> {
+                players.remove(player);
+                return players.isEmpty() ? null : players;
+            });
+        }
+    }
+
+    /*
+        Packs a cell's x and z coordinates into a single long.
+     */
+    private static long cellKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+}
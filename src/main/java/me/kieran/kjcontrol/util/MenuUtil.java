@@ -1,17 +1,224 @@
 package me.kieran.kjcontrol.util;
 
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.menu.MenuRegistry;
+import me.kieran.kjcontrol.menu.MenuSource;
+import me.kieran.kjcontrol.record.MenuDefinition;
+import me.kieran.kjcontrol.record.MenuItemDefinition;
+import me.kieran.kjcontrol.record.PlaceholderAnalysis;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class MenuUtil {
 
+    /*
+        Ready-built templates for each menu item.
+
+        Built once by load(), so opening a menu never has to set
+        up ItemMeta, enchantments or lore again. Templates are
+        never handed out directly - callers always get a clone,
+        so nothing can change the template itself.
+
+        Written on the main thread, and only read there too.
+     */
+    private static ItemStack reloadBlock;
+    private static ItemStack previewFormatBlock;
+    private static ItemStack dashboardBlock;
+
+    /*
+        The latest version of menus.yml that this plugin expects.
+     */
+    private static final int LATEST_MENUS_VERSION = 1;
+
+    // Reference to the menus.yml file on disk.
+    private static File file;
+
+    /*
+        Reads menus.yml into a definition for each menu.
+
+        Nothing live is changed here: the result is published
+        as part of a ConfigSnapshot, so it is safe to call off
+        the main thread. A menu with a mistake in it is skipped
+        with a warning, without affecting the others. If the
+        file can't be read at all, the current menus are kept.
+     */
+    public static Map<String, MenuDefinition> build() {
+        KJControl plugin = KJControl.getInstance();
+
+        try {
+            if (file == null) {
+                file = new File(plugin.getDataFolder(), "menus.yml");
+            }
+
+            if (!file.exists()) {
+                plugin.saveResource("menus.yml", false);
+            }
+
+            FileConfiguration config = YamlConfiguration.loadConfiguration(file);
+
+            int configVersion = config.getInt("menus-version");
+            if (configVersion != LATEST_MENUS_VERSION) {
+                plugin.getComponentLogger().warn(
+                        "KJControl/menus.yml is out of date. Please regenerate to avoid unexpected behaviour"
+                );
+            }
+
+            // The navigation buttons are shared by every menu.
+            MenuItemDefinition previousPage = readButton(
+                    config.getConfigurationSection("navigation.previous-page"), "<yellow>Previous page"
+            );
+            MenuItemDefinition nextPage = readButton(
+                    config.getConfigurationSection("navigation.next-page"), "<yellow>Next page"
+            );
+            Component loading = ResolveUtil.serializer()
+                    .deserialize(config.getString("navigation.loading", "<dark_gray>Loading..."));
+
+            ConfigurationSection menus = config.getConfigurationSection("menus");
+            if (menus == null) return Map.of();
+
+            Map<String, MenuDefinition> definitions = new LinkedHashMap<>();
+            for (String name : menus.getKeys(false)) {
+                ConfigurationSection section = menus.getConfigurationSection(name);
+                if (section == null) continue;
+
+                try {
+                    definitions.put(name, readMenu(name, section, previousPage, nextPage, loading));
+                } catch (IllegalArgumentException e) {
+                    plugin.getComponentLogger().warn("Skipping menu '{}' in menus.yml: {}", name, e.getMessage());
+                }
+            }
+
+            return Collections.unmodifiableMap(definitions);
+        } catch (Exception e) {
+            plugin.getComponentLogger().error("Failed to load menus.yml");
+            plugin.getComponentLogger().error(MessagesUtil.defaultErrorMessage(e));
+            return ConfigUtil.snapshot().menus();
+        }
+    }
+
+    /*
+        Reads a single menu.
+
+        @throws IllegalArgumentException if the menu can't be used
+     */
+    private static MenuDefinition readMenu(
+            String name, ConfigurationSection section,
+            MenuItemDefinition previousPage, MenuItemDefinition nextPage, Component loading
+    ) {
+        MenuSource source = MenuSource.fromKey(section.getString("source"));
+        if (source == null) throw new IllegalArgumentException("unknown source '" + section.getString("source") + "'");
+
+        // At least one row of entries, plus the navigation row.
+        int rows = Math.clamp(section.getInt("rows", 6), 2, 6);
+
+        return new MenuDefinition(
+                name,
+                ResolveUtil.serializer().deserialize(section.getString("title", name)),
+                rows,
+                section.getString("permission"),
+                source,
+                readItem(section.getConfigurationSection("item")),
+                previousPage,
+                nextPage,
+                loading
+        );
+    }
+
+    /*
+        Reads an item's material, name and lore.
+
+        @throws IllegalArgumentException if the section is missing
+                                         or the material is unknown
+     */
+    private static MenuItemDefinition readItem(ConfigurationSection section) {
+        if (section == null) throw new IllegalArgumentException("missing item section");
+
+        String materialName = section.getString("material", "PAPER");
+        Material material = Material.matchMaterial(materialName);
+        if (material == null || !material.isItem())
+            throw new IllegalArgumentException("unknown material '" + materialName + "'");
+
+        List<String> lore = List.copyOf(section.getStringList("lore"));
+
+        return new MenuItemDefinition(
+                material,
+                section.getString("name", ""),
+                lore,
+                ResolveUtil.analysePlaceholders(String.join("\n", lore))
+        );
+    }
+
+    /*
+        Reads a navigation button, falling back to an
+        arrow with the given name if it isn't set.
+     */
+    private static MenuItemDefinition readButton(ConfigurationSection section, String defaultName) {
+        if (section == null) return new MenuItemDefinition(Material.ARROW, defaultName, List.of(), PlaceholderAnalysis.CONSTANT);
+
+        Material material = Material.matchMaterial(section.getString("material", "ARROW"));
+        return new MenuItemDefinition(
+                material == null || !material.isItem() ? Material.ARROW : material,
+                section.getString("name", defaultName),
+                List.of(),
+                PlaceholderAnalysis.CONSTANT
+        );
+    }
+
+    /*
+        Builds (or rebuilds) every menu item template.
+
+        Called when the plugin enables and on every reload.
+     */
+    public static void load() {
+        reloadBlock = createBlock(
+                Material.EMERALD_BLOCK,
+                Component.text("Reload KJControl", NamedTextColor.GREEN),
+                List.of(
+                        Component.text("Reloads the plugin!", NamedTextColor.GRAY)
+                ),
+                true,
+                MenuRegistry.RELOAD
+        );
+
+        previewFormatBlock = createBlock(
+                Material.DIAMOND_BLOCK,
+                Component.text("Preview Chat Format", NamedTextColor.AQUA),
+                List.of(
+                        Component.text(
+                                "Shows you what your chat will look like!",
+                                NamedTextColor.GRAY
+                        )
+                ),
+                true,
+                MenuRegistry.PREVIEW_FORMAT
+        );
+
+        dashboardBlock = createBlock(
+                Material.CLOCK,
+                Component.text("Performance", NamedTextColor.GOLD),
+                List.of(
+                        Component.text("Live chat and cache metrics", NamedTextColor.GRAY)
+                ),
+                false,
+                MenuRegistry.DASHBOARD
+        );
+    }
+
     /*
         Generic factory method for creating styled menu blocks.
 
@@ -24,12 +231,13 @@ public final class MenuUtil {
         - displayName -> The name shown at the top of the tooltip
         - lore        -> The descriptive lines shown below the name
         - isGlowing   -> Whether the item should have a visual glow
+        - action      -> The MenuRegistry action the item runs when clicked, or null
 
         This keeps menu creation clean, reusable, and easy to extend.
      */
     public static ItemStack createBlock(
             Material material, Component displayName,
-            List<Component> lore, boolean isGlowing
+            List<Component> lore, boolean isGlowing, String action
     ) {
         /*
             Create a new ItemStack using the material param.
@@ -81,6 +289,14 @@ public final class MenuUtil {
              */
             if (isGlowing) makeGlow(meta);
 
+            /*
+                Tag the item with its action, so a click on it
+                can be handled wherever the item is placed.
+             */
+            if (action != null) {
+                meta.getPersistentDataContainer().set(MenuRegistry.ACTION_KEY, PersistentDataType.STRING, action);
+            }
+
             /*
                 Apply the modified ItemMeta back onto the ItemStack.
 
@@ -94,41 +310,31 @@ public final class MenuUtil {
     }
 
     /*
-        Creates the predefined "Reload KJControl" menu item.
+        Returns a copy of the "Reload KJControl" menu item.
 
-        This method delegates to createBlock(...) to keep
-        styling consistent and avoid repeating meta logic.
+        Cloning the template only copies its data,
+        which is far cheaper than building a new item.
      */
     public static ItemStack getReloadBlock() {
-        return createBlock(
-                Material.EMERALD_BLOCK,
-                Component.text("Reload KJControl", NamedTextColor.GREEN),
-                List.of(
-                        Component.text("Reloads the plugin!", NamedTextColor.GRAY)
-                ),
-                true
-        );
+        if (reloadBlock == null) load();
+        return reloadBlock.clone();
     }
 
     /*
-        Creates the predefined "Preview Chat Format" menu item.
-
-        Like getReloadBlock(), this method defines only
-        the visual data while createBlock(...) handles
-        the actual ItemStack configuration.
+        Returns a copy of the "Preview Chat Format" menu item.
      */
     public static ItemStack getPreviewFormatBlock() {
-        return createBlock(
-                Material.DIAMOND_BLOCK,
-                Component.text("Preview Chat Format", NamedTextColor.AQUA),
-                List.of(
-                        Component.text(
-                                "Shows you what your chat will look like!",
-                                NamedTextColor.GRAY
-                        )
-                ),
-                true
-        );
+        if (previewFormatBlock == null) load();
+        return previewFormatBlock.clone();
+    }
+
+    /*
+        Returns a copy of the "Performance" menu item,
+        which opens the performance dashboard.
+     */
+    public static ItemStack getDashboardBlock() {
+        if (dashboardBlock == null) load();
+        return dashboardBlock.clone();
     }
 
     /*
@@ -1,14 +1,23 @@
 package me.kieran.kjcontrol.util;
 
-import me.clip.placeholderapi.PlaceholderAPI;
 import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.ConfigSnapshot;
+import me.kieran.kjcontrol.record.LoadedMessages;
+import me.kieran.kjcontrol.record.MessageBundle;
+import me.kieran.kjcontrol.record.Template;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 public final class MessagesUtil {
 
@@ -18,51 +27,31 @@ public final class MessagesUtil {
      */
     private static final int LATEST_CONFIG_VERSION = 1;
 
+    // The tag the join/quit summaries use for the number of players.
+    public static final String SUMMARY_COUNT_TAG = "count";
+
     // The physical messages.yml file on disk.
     private static File file;
 
-    // Bukkit's in-memory representation of messages.yml
-    private static FileConfiguration config;
-
     /*
-        Feature toggle for join/quit messages.
-        This is read from config.yml, not messages.yml
+        Folder (inside the plugin folder) holding one
+        messages file per locale, e.g. lang/de_de.yml.
      */
-    private static boolean joinQuitEnabled;
+    private static final String LANG_FOLDER = "lang";
 
     /*
-        Container class for message strings.
+        Reads messages.yml and works out everything needed
+        to build join and quit messages later.
 
-        This keeps all message values grouped together
-        and avoids polluting MessagesUtil with many fields.
-     */
-    public static final class Messages {
-        public static String join_message;
-        public static String quit_message;
-    }
+        Nothing live is changed here: the result is published
+        as part of a ConfigSnapshot. If the file can't be read,
+        the messages that are currently loaded (if any) are kept.
 
-    /*
-        Loads (or reloads) messages.yml.
-
-        This method should only be called if the messages
-        feature is enabled in config.yml
+        @param settings The config.yml being loaded alongside
      */
-    public static void load() {
+    public static LoadedMessages build(FileConfiguration settings) {
         KJControl plugin = KJControl.getInstance();
 
-        /*
-            Hard guard: this loader should never be accessed
-            when the feature is disabled.
-
-            If this exception ever fires, it means there is
-            a logical error elsewhere in the plugin.
-         */
-        if (!ConfigUtil.messagesEnabled) {
-            throw new IllegalStateException(
-                    "Messages loader accessed while feature disabled"
-            );
-        }
-
         try {
             /*
                 Lazily create the File instance.
@@ -83,7 +72,7 @@ public final class MessagesUtil {
             }
 
             // Load the YAML file into memory.
-            config = YamlConfiguration.loadConfiguration(file);
+            FileConfiguration config = YamlConfiguration.loadConfiguration(file);
 
             // Version check for messages.yml
             int configVersion = config.getInt("messages-version");
@@ -99,16 +88,27 @@ public final class MessagesUtil {
                 This allows server owners to disable join/quit
                 messages without deleting them.
              */
-            joinQuitEnabled = plugin.getConfig().getBoolean("features.messages.enable-join-quit", true);
+            boolean joinQuitEnabled = settings.getBoolean("features.messages.enable-join-quit", true);
 
             /*
                 Only load join/quit messages if the feature
                 is enabled.
              */
-            if (joinQuitEnabled) {
-                Messages.join_message = config.getString("join-message");
-                Messages.quit_message = config.getString("quit-message");
-            }
+            if (!joinQuitEnabled) return new LoadedMessages(false, null, Map.of(), Map.of());
+
+            /*
+                Compile each message into a template once, here,
+                so join and quit events only fill in the player's
+                name and placeholders instead of parsing MiniMessage.
+             */
+            MessageBundle defaultBundle = readBundle(config, null);
+
+            return new LoadedMessages(
+                    true,
+                    defaultBundle,
+                    loadLocales(plugin, defaultBundle),
+                    new ConcurrentHashMap<>()
+            );
         } catch (Exception e) {
             /*
                 Catch-all protection to prevent plugin crashes
@@ -116,67 +116,250 @@ public final class MessagesUtil {
              */
             plugin.getComponentLogger().error("Failed to load messages.yml");
             plugin.getComponentLogger().error(defaultErrorMessage(e));
+            return ConfigUtil.snapshot().messages();
         }
 
     }
 
+    /*
+        Reads and compiles every locale file in the lang folder.
+
+        Each file is named after the locale it is for, e.g.
+        lang/de_de.yml or lang/fr.yml, and uses the same keys
+        as messages.yml. Anything a file leaves out falls back
+        to messages.yml, reusing its already-compiled template.
+
+        A locale file that fails to load is skipped on its own,
+        so one bad translation can't take the others down.
+     */
+    private static Map<String, MessageBundle> loadLocales(KJControl plugin, MessageBundle defaultBundle) {
+        File[] files = new File(plugin.getDataFolder(), LANG_FOLDER)
+                .listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files == null || files.length == 0) return Map.of();
+
+        Map<String, MessageBundle> locales = new HashMap<>();
+        for (File localeFile : files) {
+            String name = localeFile.getName();
+            String locale = name.substring(0, name.length() - ".yml".length()).toLowerCase(Locale.ROOT);
+
+            try {
+                locales.put(locale, readBundle(YamlConfiguration.loadConfiguration(localeFile), defaultBundle));
+            } catch (Exception e) {
+                plugin.getComponentLogger().error("Failed to load " + LANG_FOLDER + "/" + name);
+                plugin.getComponentLogger().error(defaultErrorMessage(e));
+            }
+        }
+
+        return Map.copyOf(locales);
+    }
+
+    /*
+        Reads one set of messages.
+
+        @param config   The messages.yml or locale file to read
+        @param fallback Where to take missing messages from, or null for messages.yml itself
+     */
+    private static MessageBundle readBundle(FileConfiguration config, MessageBundle fallback) {
+        if (fallback == null) {
+            return new MessageBundle(
+                    compile(config.getString("join-message")),
+                    compile(config.getString("quit-message")),
+                    compileSummary(config.getString("join-summary", "<green>+ <count> players joined")),
+                    compileSummary(config.getString("quit-summary", "<red>- <count> players left"))
+            );
+        }
+
+        return new MessageBundle(
+                config.isSet("join-message") ? compile(config.getString("join-message")) : fallback.joinMessage(),
+                config.isSet("quit-message") ? compile(config.getString("quit-message")) : fallback.quitMessage(),
+                config.isSet("join-summary") ? compileSummary(config.getString("join-summary")) : fallback.joinSummary(),
+                config.isSet("quit-summary") ? compileSummary(config.getString("quit-summary")) : fallback.quitSummary()
+        );
+    }
+
+    /*
+        Compiles a message, or returns null if it is not set.
+     */
+    private static Template compile(String message) {
+        return message == null ? null : TemplateUtil.compile(message);
+    }
+
+    /*
+        Compiles a join/quit summary, with <count> as its slot.
+     */
+    private static Template compileSummary(String message) {
+        return TemplateUtil.compileValue(message, SUMMARY_COUNT_TAG);
+    }
+
     /*
         Indicates whether messages.yml has been successfully loaded.
 
         Useful for defensive checks elsewhere in the plugin.
      */
     public static boolean isLoaded() {
-        return config != null;
+        return ConfigUtil.snapshot().isMessagesLoaded();
     }
 
     /*
-        Returns true if join/quit messages are disabled.
+        Returns true if join/quit messages are disabled,
+        either in config.yml or because messages.yml
+        is not loaded.
 
         The inverted name makes calling code read naturally:
             if (MessagesUtil.isJoinQuitDisabled()) return;
      */
     public static boolean isJoinQuitDisabled() {
-        return !joinQuitEnabled;
+        ConfigSnapshot config = ConfigUtil.snapshot();
+        return !config.isMessagesLoaded() || !config.messages().joinQuitEnabled();
+    }
+
+    /*
+        Returns whether any locale files are loaded.
+     */
+    public static boolean hasLocales() {
+        LoadedMessages messages = ConfigUtil.snapshot().messages();
+        return messages != null && messages.hasLocales();
     }
 
     /*
-        Builds the join message component for a player.
+        Returns whether any online player (other than exclude)
+        uses a locale file rather than messages.yml.
+
+        Only then does a join or quit message need sending per
+        player. Otherwise the single message on the event is
+        already right for everyone.
+     */
+    public static boolean needsLocales(Player exclude) {
+        LoadedMessages messages = ConfigUtil.snapshot().messages();
+        if (messages == null || !messages.hasLocales()) return false;
+
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (viewer != exclude && messages.bundleFor(viewer.locale()) != messages.defaultBundle()) return true;
+        }
+        return false;
+    }
+
+    /*
+        Builds the join message component for a player,
+        using the messages from messages.yml.
 
         Returns null if no join message is configured.
      */
     public static Component getJoinMessage(Player player) {
-        // No message configured -> nothing to send
-        if (Messages.join_message == null) return null;
+        LoadedMessages messages = ConfigUtil.snapshot().messages();
+        if (messages == null || messages.defaultBundle() == null) return null;
+
+        return render(messages.defaultBundle().joinMessage(), player);
+    }
+
+    /*
+        Builds the quit message component for a player,
+        using the messages from messages.yml.
+
+        Returns null if no quit message is configured.
+     */
+    public static Component getQuitMessage(Player player) {
+        LoadedMessages messages = ConfigUtil.snapshot().messages();
+        if (messages == null || messages.defaultBundle() == null) return null;
+
+        return render(messages.defaultBundle().quitMessage(), player);
+    }
+
+    /*
+        Sends a player's join message to everyone, each in their own locale.
+
+        @param defaultMessage The message already built for players using messages.yml
+     */
+    public static void broadcastJoinMessage(Player player, Component defaultMessage) {
+        broadcast(null, defaultMessage, bundle -> render(bundle.joinMessage(), player));
+    }
+
+    /*
+        Sends a player's quit message to everyone else, each in their own locale.
+
+        The quitting player is still online while the event runs,
+        so they are skipped.
+
+        @param defaultMessage The message already built for players using messages.yml
+     */
+    public static void broadcastQuitMessage(Player player, Component defaultMessage) {
+        broadcast(player, defaultMessage, bundle -> render(bundle.quitMessage(), player));
+    }
+
+    /*
+        Sends a message to every online player (and the console)
+        in the viewer's own locale.
+
+        @param exclude A player not to send to, or null
+        @param render  Builds the message from a bundle, or returns null for none
+     */
+    public static void broadcast(Player exclude, Function<MessageBundle, Component> render) {
+        broadcast(exclude, null, render);
+    }
+
+    /*
+        Sends a message to every online player (and the console)
+        in the viewer's own locale.
+
+        The message is rendered at most once per bundle, not once
+        per viewer, so a server with hundreds of players and a
+        handful of languages only renders a handful of times.
+        The console always gets the messages.yml version.
+
+        @param exclude        A player not to send to, or null
+        @param defaultMessage The messages.yml version if it is already built, or null to build it
+        @param render         Builds the message from a bundle, or returns null for none
+     */
+    public static void broadcast(Player exclude, Component defaultMessage, Function<MessageBundle, Component> render) {
+        LoadedMessages messages = ConfigUtil.snapshot().messages();
+        if (messages == null || messages.defaultBundle() == null) return;
 
         /*
-            Get a MiniMessage serializer configured for
-            this specific player (placeholders, resolvers, etc.)
+            Keyed by identity: bundles are shared between every
+            locale that resolves to them, and comparing records
+            by value would compare whole templates.
          */
-        MiniMessage serializer = ResolveUtil.getSerializer(player);
+        Map<MessageBundle, Component> rendered = new IdentityHashMap<>();
+        if (defaultMessage != null) rendered.put(messages.defaultBundle(), defaultMessage);
 
-        /*
-            Apply PlaceholderAPI placeholders to the raw string and
-            deserialize the string into an Adventure Component
-        */
-        return serializer.deserialize(
-                PlaceholderAPI.setPlaceholders(player, Messages.join_message)
-        );
+        for (Player viewer : Bukkit.getOnlinePlayers()) {
+            if (viewer == exclude) continue;
+
+            Component message = renderOnce(rendered, messages.bundleFor(viewer.locale()), render);
+            if (message != null) viewer.sendMessage(message);
+        }
+
+        Component message = renderOnce(rendered, messages.defaultBundle(), render);
+        if (message != null) Bukkit.getConsoleSender().sendMessage(message);
     }
 
     /*
-        Builds the quit message component for a player.
+        Renders a bundle's message, reusing it if this
+        bundle has already been rendered.
 
-        Returns null if no quit message is configured.
+        containsKey is used instead of computeIfAbsent so a
+        bundle with no message (null) is only asked once too.
      */
-    public static Component getQuitMessage(Player player) {
-        // No message configured -> nothing to send
-        if (Messages.quit_message == null) return null;
+    private static Component renderOnce(
+            Map<MessageBundle, Component> rendered,
+            MessageBundle bundle,
+            Function<MessageBundle, Component> render
+    ) {
+        if (rendered.containsKey(bundle)) return rendered.get(bundle);
+
+        Component message = render.apply(bundle);
+        rendered.put(bundle, message);
+        return message;
+    }
 
-        MiniMessage serializer = ResolveUtil.getSerializer(player);
+    /*
+        Fills the player's slots into a compiled message.
 
-        return serializer.deserialize(
-                PlaceholderAPI.setPlaceholders(player, Messages.quit_message)
-        );
+        Join and quit messages are seen by everyone, so there is
+        no single viewer to resolve relational placeholders for.
+     */
+    private static Component render(Template template, Player player) {
+        return template == null ? null : template.render(player, null, null);
     }
 
     /*
@@ -194,7 +377,7 @@ public final class MessagesUtil {
     }
 
     public static Component noPermissionMessage(String permissionNode) {
-        return MiniMessage.miniMessage()
+        return ResolveUtil.serializer()
                 .deserialize("<red>You do not have permission: <dark_gray>" + permissionNode);
     }
 
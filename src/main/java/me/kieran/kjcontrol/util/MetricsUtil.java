@@ -0,0 +1,163 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.MetricsSample;
+import me.kieran.kjcontrol.record.TimingSample;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class MetricsUtil {
+
+    /*
+        Counters and timers for the performance dashboard.
+
+        Recording is called from the chat threads on every message,
+        so it only ever adds to striped counters (LongAdder) or a
+        slot in an atomic array - no locks, and no allocation.
+
+        Everything is added up and reset by sample(), which the
+        dashboard calls once a second while it is open.
+     */
+    private static final LongAdder chatMessages = new LongAdder();
+    private static final LongAdder placeholderHits = new LongAdder();
+    private static final LongAdder placeholderMisses = new LongAdder();
+    private static final LongAdder headerHits = new LongAdder();
+    private static final LongAdder headerMisses = new LongAdder();
+
+    private static final Timer render = new Timer();
+    private static final Timer placeholders = new Timer();
+
+    // When the config was last (re)loaded, in epoch millis.
+    private static volatile long lastReload;
+
+    // When sample() was last called, from System.nanoTime().
+    private static long lastSampleAt = System.nanoTime();
+
+    public static void countChatMessage() {
+        chatMessages.increment();
+    }
+
+    public static void recordRender(long nanos) {
+        render.record(nanos);
+    }
+
+    public static void recordPlaceholder(long nanos) {
+        placeholders.record(nanos);
+    }
+
+    public static void placeholderCacheHit() {
+        placeholderHits.increment();
+    }
+
+    public static void placeholderCacheMiss() {
+        placeholderMisses.increment();
+    }
+
+    public static void headerCacheHit() {
+        headerHits.increment();
+    }
+
+    public static void headerCacheMiss() {
+        headerMisses.increment();
+    }
+
+    public static void markReload() {
+        lastReload = System.currentTimeMillis();
+    }
+
+    /*
+        Adds up everything recorded since the last sample,
+        and starts a new sampling period.
+
+        MUST be called from the main thread.
+     */
+    public static MetricsSample sample() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - lastSampleAt) / 1_000_000_000.0;
+        lastSampleAt = now;
+
+        return new MetricsSample(
+                chatMessages.sumThenReset() / seconds,
+                render.drain(),
+                placeholders.drain(),
+                placeholderHits.sumThenReset(),
+                placeholderMisses.sumThenReset(),
+                headerHits.sumThenReset(),
+                headerMisses.sumThenReset(),
+                lastReload
+        );
+    }
+
+    /*
+        A lock-free timing histogram.
+
+        Each power of two is split into four buckets, so a
+        percentile read from it is within 25% of the real value,
+        using a fixed 256 counters whatever the range of times.
+     */
+    private static final class Timer {
+
+        private static final int SUB_BUCKETS = 4;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(bucket(nanos));
+            total.add(nanos);
+        }
+
+        /*
+            Reads and resets the histogram.
+
+            Times recorded while this runs may land in either
+            sample, which is fine for a once-a-second display.
+         */
+        TimingSample drain() {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.getAndSet(i, 0);
+                count += counts[i];
+            }
+
+            long sum = total.sumThenReset();
+            if (count == 0) return new TimingSample(0, 0, 0);
+
+            long target = (long) Math.ceil(count * 0.99);
+            long seen = 0;
+            long p99 = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    p99 = upperBound(i);
+                    break;
+                }
+            }
+
+            return new TimingSample(count, sum / count, p99);
+        }
+
+        /*
+            The bucket for a time: its power of two, then which
+            quarter of that power it falls in.
+         */
+        private static int bucket(long nanos) {
+            if (nanos < 1) nanos = 1;
+
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int sub = exponent < 2 ? 0 : (int) ((nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1));
+            return exponent * SUB_BUCKETS + sub;
+        }
+
+        // The largest time that falls in a bucket.
+        private static long upperBound(int bucket) {
+            int exponent = bucket / SUB_BUCKETS;
+            int sub = bucket % SUB_BUCKETS;
+            if (exponent < 2) return (1L << (exponent + 1)) - 1;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+        }
+    }
+
+}
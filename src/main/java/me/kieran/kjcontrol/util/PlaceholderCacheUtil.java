@@ -0,0 +1,168 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.CachedPlaceholder;
+import me.kieran.kjcontrol.record.PlaceholderCacheSettings;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public final class PlaceholderCacheUtil {
+
+    /*
+        Cached placeholder values, keyed by player UUID
+        and then by placeholder (e.g. "%vault_prefix%").
+
+        ConcurrentHashMap is used at both levels because
+        values are read and written from the async chat threads.
+     */
+    private static final Map<UUID, Map<String, CachedPlaceholder>> cache = new ConcurrentHashMap<>();
+
+    /*
+        Reads the cache settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static PlaceholderCacheSettings build(FileConfiguration config) {
+
+        /*
+            Read any per-placeholder TTL overrides.
+
+            A TTL of 0 means that placeholder is never cached,
+            which is useful for values that must always be live.
+
+            YAML treats '.' as a path separator, so a placeholder
+            like "%server_tps_1.0%" is read as nested sections.
+            Reading every key deeply and keeping only the values
+            gives back each placeholder as it was written.
+         */
+        Map<String, Long> overrides = new HashMap<>();
+        ConfigurationSection section = config.getConfigurationSection("placeholder-cache.ttl");
+        if (section != null) {
+            for (String placeholder : section.getKeys(true)) {
+                if (section.isConfigurationSection(placeholder)) continue;
+                overrides.put(placeholder, TimeUnit.MILLISECONDS.toNanos(section.getLong(placeholder)));
+            }
+        }
+
+        return new PlaceholderCacheSettings(
+                config.getBoolean("placeholder-cache.enabled", true),
+                TimeUnit.MILLISECONDS.toNanos(config.getLong("placeholder-cache.default-ttl", 0)),
+                config.getInt("placeholder-cache.max-entries-per-player", 64),
+                Map.copyOf(overrides)
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        Every cached value is dropped, so changes to
+        placeholders or TTLs take effect straight away.
+     */
+    public static void load() {
+        invalidateAll();
+    }
+
+    /*
+        Returns the value of a placeholder for a player.
+
+        If a fresh value is cached it is returned straight away.
+        Otherwise the loader is called to resolve it, and the
+        result is cached for that placeholder's TTL.
+
+        @param player      The player the placeholder is resolved for
+        @param placeholder The placeholder, including % characters
+        @param loader      Resolves the value when it is not cached
+     */
+    public static String get(Player player, String placeholder, Supplier<String> loader) {
+        PlaceholderCacheSettings settings = ConfigUtil.snapshot().settings().placeholderCache();
+        if (!settings.enabled()) return loader.get();
+
+        long ttl = settings.ttlOverrides().getOrDefault(placeholder, settings.defaultTtl());
+        if (ttl <= 0) return loader.get();
+
+        long now = System.nanoTime();
+        Map<String, CachedPlaceholder> values = cache.get(player.getUniqueId());
+
+        if (values != null) {
+            CachedPlaceholder cached = values.get(placeholder);
+            if (cached != null && cached.isValid(now)) {
+                MetricsUtil.placeholderCacheHit();
+                return cached.value();
+            }
+        }
+
+        MetricsUtil.placeholderCacheMiss();
+        String value = loader.get();
+
+        /*
+            Don't cache for players who have already left.
+
+            A chat message can still be rendering after its sender
+            quits, and caching then would leave an entry behind
+            that nothing ever removes.
+         */
+        if (!player.isOnline()) return value;
+
+        if (values == null) values = cache.computeIfAbsent(player.getUniqueId(), uuid -> new ConcurrentHashMap<>());
+
+        /*
+            Keep each player's cache bounded.
+
+            Expired values are dropped first. If the player is still
+            at the limit, the new value is simply not cached.
+         */
+        if (values.size() >= settings.maxEntries() && !values.containsKey(placeholder)) {
+            values.values().removeIf(cached -> !cached.isValid(now));
+            if (values.size() >= settings.maxEntries()) return value;
+        }
+
+        values.put(placeholder, new CachedPlaceholder(value, now + ttl));
+        return value;
+    }
+
+    /*
+        Returns how long a placeholder's value is cached for,
+        in nanoseconds, or 0 if it is never cached.
+     */
+    public static long getTtl(String placeholder) {
+        PlaceholderCacheSettings settings = ConfigUtil.snapshot().settings().placeholderCache();
+        if (!settings.enabled()) return 0;
+
+        return Math.max(0, settings.ttlOverrides().getOrDefault(placeholder, settings.defaultTtl()));
+    }
+
+    /*
+        Drops every cached value for a player.
+
+        Called when the player quits, and can be called by other
+        code whenever something the player's placeholders depend
+        on has changed.
+     */
+    public static void invalidate(UUID uuid) {
+        cache.remove(uuid);
+    }
+
+    /*
+        Drops a single cached placeholder for a player.
+     */
+    public static void invalidate(UUID uuid, String placeholder) {
+        Map<String, CachedPlaceholder> values = cache.get(uuid);
+        if (values != null) values.remove(placeholder);
+    }
+
+    /*
+        Drops every cached value for every player.
+     */
+    public static void invalidateAll() {
+        cache.clear();
+    }
+
+}
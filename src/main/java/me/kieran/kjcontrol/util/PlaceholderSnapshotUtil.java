@@ -0,0 +1,152 @@
+package me.kieran.kjcontrol.util;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.PlaceholderSnapshot;
+import me.kieran.kjcontrol.record.PlaceholderSnapshotSettings;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PlaceholderSnapshotUtil {
+
+    /*
+        The latest snapshot for each online player.
+
+        Written on the main thread, read from the async chat threads.
+        Each snapshot is immutable, so publishing one is a single put.
+     */
+    private static final Map<UUID, PlaceholderSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /*
+        Players still waiting to be refreshed in the current cycle.
+
+        Only touched from the main thread.
+     */
+    private static final Queue<UUID> pending = new ArrayDeque<>();
+
+    // How many players are refreshed each tick in the current cycle.
+    private static int batchSize;
+
+    // The repeating refresh task, or null if snapshots are disabled.
+    private static BukkitTask task;
+
+    /*
+        Reads the snapshot settings from config.yml.
+
+        Nothing live is changed here: the settings are published
+        as part of a ConfigSnapshot, so this is safe off the main thread.
+     */
+    public static PlaceholderSnapshotSettings build(FileConfiguration config) {
+        return new PlaceholderSnapshotSettings(
+                ResolveUtil.isPlaceholderApiEnabled() && config.getBoolean("placeholder-snapshots.enabled", false),
+                Math.max(1, config.getInt("placeholder-snapshots.interval", 20))
+        );
+    }
+
+    /*
+        Called after a new snapshot is published.
+
+        This must be called on the main thread, after the chat
+        format has been loaded, since the format decides which
+        placeholders need snapshotting.
+
+        Every online player is snapshotted straight away, so chat
+        never has to wait for the first refresh after a reload.
+     */
+    public static void load() {
+        KJControl plugin = KJControl.getInstance();
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        snapshots.clear();
+        pending.clear();
+
+        if (!isEnabled()) return;
+
+        for (Player player : Bukkit.getOnlinePlayers()) snapshot(player);
+
+        /*
+            Run every tick, refreshing a slice of the online players.
+
+            Spreading the work means a large server resolves a few
+            players per tick instead of everyone at once.
+         */
+        task = Bukkit.getScheduler().runTaskTimer(plugin, PlaceholderSnapshotUtil::tick, 1L, 1L);
+    }
+
+    /*
+        Returns whether snapshot mode is enabled.
+     */
+    public static boolean isEnabled() {
+        return ConfigUtil.snapshot().settings().placeholderSnapshots().enabled();
+    }
+
+    /*
+        Returns the snapshotted value of a placeholder for
+        a player, or null if there is none.
+
+        Safe to call from any thread.
+     */
+    public static String get(UUID uuid, String placeholder) {
+        PlaceholderSnapshot snapshot = snapshots.get(uuid);
+        return snapshot == null ? null : snapshot.values().get(placeholder);
+    }
+
+    /*
+        Takes a fresh snapshot of a player's placeholders.
+
+        MUST be called on the main thread, as this is the only
+        place that calls PlaceholderAPI in snapshot mode.
+     */
+    public static void snapshot(Player player) {
+        if (!isEnabled()) return;
+
+        Set<String> placeholders = ChatFormatUtil.getPlaceholders();
+        Map<String, String> values = new HashMap<>(placeholders.size());
+
+        for (String placeholder : placeholders)
+            values.put(placeholder, PlaceholderAPI.setPlaceholders(player, placeholder));
+
+        snapshots.put(player.getUniqueId(), new PlaceholderSnapshot(Map.copyOf(values)));
+    }
+
+    /*
+        Drops a player's snapshot, e.g. when they quit.
+     */
+    public static void remove(UUID uuid) {
+        snapshots.remove(uuid);
+    }
+
+    /*
+        Refreshes the next slice of players.
+
+        When a cycle finishes, the queue is refilled with every
+        online player and the batch size is worked out so the
+        whole cycle takes roughly "interval" ticks.
+     */
+    private static void tick() {
+        if (pending.isEmpty()) {
+            for (Player player : Bukkit.getOnlinePlayers()) pending.add(player.getUniqueId());
+            int interval = ConfigUtil.snapshot().settings().placeholderSnapshots().interval();
+            batchSize = Math.max(1, (pending.size() + interval - 1) / interval);
+        }
+
+        for (int i = 0; i < batchSize && !pending.isEmpty(); i++) {
+            Player player = Bukkit.getPlayer(pending.poll());
+            if (player != null) snapshot(player);
+        }
+    }
+
+}
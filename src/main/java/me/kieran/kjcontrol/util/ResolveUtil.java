@@ -1,98 +1,312 @@
 package me.kieran.kjcontrol.util;
 
 import me.clip.placeholderapi.PlaceholderAPI;
+import me.kieran.kjcontrol.KJControl;
+import me.kieran.kjcontrol.record.PlaceholderAnalysis;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.Context;
 import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.ParsingException;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.ArgumentQueue;
 import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.text.minimessage.tag.standard.StandardTags;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class ResolveUtil {
 
     /*
-        Creates a MiniMessage serializer configured for a specific player.
+        Matches PlaceholderAPI placeholders, using the
+        same pattern PlaceholderAPI itself uses.
+     */
+    public static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("%([^%]+)%");
+
+    // Matches only relational placeholders (%rel_...%).
+    private static final Pattern RELATIONAL_PATTERN = Pattern.compile("%rel_[^%]+%");
+
+    /*
+        Whether the warning about relational placeholders in
+        snapshot mode has been logged yet. It is only logged once.
+     */
+    private static final AtomicBoolean relationalWarned = new AtomicBoolean();
+
+    /*
+        Whether PlaceholderAPI is installed.
+
+        PlaceholderAPI is an optional dependency that loads before
+        KJControl, so this can safely be checked once. Without it,
+        none of the PlaceholderAPI classes may be touched.
+
+        There is no server at all in unit tests, which is
+        treated the same as PlaceholderAPI not being installed.
+     */
+    private static final boolean PLACEHOLDER_API =
+            Bukkit.getServer() != null && Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null;
+
+    /*
+        The shared MiniMessage serializer used by the whole plugin.
+
+        It is built once, when this class is first loaded, and
+        only understands the standard MiniMessage tags:
+        <color>, <bold>, <hover>, <click>, <gradient>, etc.
+
+        MiniMessage instances are immutable and thread-safe, so
+        this one instance can be used from the async chat threads
+        and the main thread at the same time.
+     */
+    private static final MiniMessage SERIALIZER = MiniMessage.builder()
+            .tags(StandardTags.defaults())
+            .build();
+
+    /*
+        Returns the shared MiniMessage serializer.
+
+        Use this directly for strings that do not need any
+        player-specific tags.
+     */
+    public static MiniMessage serializer() {
+        return SERIALIZER;
+    }
+
+    /*
+        Deserializes a MiniMessage string for a specific player.
+
+        On top of the standard tags, this understands:
+        - <username>    -> the player's name
+        - <displayname> -> the player's display name
+
+        The player tags are passed in as a small per-call resolver,
+        so no new serializer has to be built for every message.
+     */
+    public static Component deserialize(String input, Player player) {
+        return SERIALIZER.deserialize(input, playerResolver(player));
+    }
+
+    /*
+        Same as deserialize(input, player), with extra tag
+        resolvers for the caller's own tags.
+     */
+    public static Component deserialize(String input, Player player, TagResolver resolver) {
+        return SERIALIZER.deserialize(input, playerResolver(player), resolver);
+    }
+
+    /*
+        Creates the per-call resolver for <username> and <displayname>.
+
+        This is a single small object; the name and display name
+        are only looked up if the string actually uses them.
+     */
+    public static TagResolver playerResolver(Player player) {
+        return new PlayerTagResolver(player);
+    }
+
+    /*
+        Scans a config string for PlaceholderAPI placeholders.
+
+        This is meant to be called once, when a file is loaded.
+        The result tells the caller whether the string needs
+        PlaceholderAPI at all, and which placeholders it uses.
+
+        If PlaceholderAPI is not installed, every string is
+        treated as constant, since nothing could resolve them.
+     */
+    public static PlaceholderAnalysis analysePlaceholders(String input) {
+        if (input == null || !PLACEHOLDER_API || input.indexOf('%') < 0) return PlaceholderAnalysis.CONSTANT;
+
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(input);
+        while (matcher.find()) placeholders.add(matcher.group());
+
+        return placeholders.isEmpty()
+                ? PlaceholderAnalysis.CONSTANT
+                : new PlaceholderAnalysis(List.copyOf(placeholders));
+    }
+
+    /*
+        Returns true if PlaceholderAPI is installed on the server.
+     */
+    public static boolean isPlaceholderApiEnabled() {
+        return PLACEHOLDER_API;
+    }
+
+    /*
+        Applies PlaceholderAPI placeholders to a string,
+        using the given player as context.
 
-        This serializer:
-        - Supports all standard MiniMessage tags
-        - Adds custom component placeholders like <username>
-        - Can safely deserialize strings from config files
+        Strings without a '%' can not contain a placeholder,
+        so they are returned without calling PlaceholderAPI.
      */
-    public static MiniMessage getSerializer(Player player) {
+    public static String applyPlaceholders(Player player, String input) {
+        if (!PLACEHOLDER_API || input.indexOf('%') < 0) return input;
 
         /*
-            Start building a custom MiniMessage instance.
+            Snapshot mode never calls PlaceholderAPI off the main
+            thread, and arbitrary strings can't be snapshotted.
+         */
+        if (PlaceholderSnapshotUtil.isEnabled() && !Bukkit.isPrimaryThread()) return input;
+
+        return PlaceholderAPI.setPlaceholders(player, input);
+    }
+
+    /*
+        Applies PlaceholderAPI placeholders to a config string
+        that has already been analysed.
+
+        Constant strings skip PlaceholderAPI entirely. Otherwise
+        each placeholder is resolved on its own, so values can
+        come from the placeholder cache. Relational placeholders
+        are left for applyRelationalPlaceholders().
+     */
+    public static String applyPlaceholders(Player player, String input, PlaceholderAnalysis analysis) {
+        if (analysis.isConstant()) return input;
+
+        Matcher matcher = PLACEHOLDER_PATTERN.matcher(input);
+        StringBuilder resolved = new StringBuilder(input.length());
 
-            Using a builder instead of MiniMessage.miniMessage()
-            allows us to inject our own tag resolvers.
+        while (matcher.find()) {
+            String placeholder = matcher.group();
+            String value = placeholder.startsWith("%rel_") ? placeholder : resolvePlaceholder(player, placeholder);
+            matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+        }
+        matcher.appendTail(resolved);
+
+        return resolved.toString();
+    }
+
+    /*
+        Resolves the value of a single PlaceholderAPI placeholder.
+
+        Values go through PlaceholderCacheUtil, so a placeholder
+        that was resolved recently for this player is not sent
+        to its expansion again until its TTL runs out.
+     */
+    public static String resolvePlaceholder(Player player, String placeholder) {
+        if (!PLACEHOLDER_API) return placeholder;
+
+        /*
+            In snapshot mode, off-main-thread callers (the async chat
+            threads) only ever read values resolved on the main thread.
+
+            A placeholder missing from the snapshot is left empty
+            rather than calling an expansion from the wrong thread.
          */
-        return MiniMessage.builder()
-                // Define which tags MiniMessage should understand.
-                .tags(TagResolver.builder()
-
-                        /*
-                            Register all default MiniMessage tags:
-                            <color>, <bold>, <hover>, <click>, <gradient>, etc.
-                         */
-                        .resolver(StandardTags.defaults())
-
-                        /*
-                            Register a custom placeholder: <username>
-
-                            This resolves to the player's name
-                            as an Adventure Component.
-                         */
-                        .resolver(Placeholder.component(
-                                "username",
-                                player.name()
-                        ))
-
-                        /*
-                            Register another custom placeholder:
-                            <displayname>
-
-                            This resolves to the player's display name,
-                            preserving any colours or formatting.
-                         */
-                        .resolver(Placeholder.component(
-                                "displayname",
-                                player.displayName()
-                        ))
-
-                        // Finish building the TagResolver
-                        .build()
-                )
-                // Finish building the MiniMessage serializer
-                .build();
+        if (PlaceholderSnapshotUtil.isEnabled()) {
+            String value = PlaceholderSnapshotUtil.get(player.getUniqueId(), placeholder);
+            if (value != null) return value;
+            if (!Bukkit.isPrimaryThread()) return "";
+        }
+
+        return PlaceholderCacheUtil.get(player, placeholder, () -> {
+            long start = System.nanoTime();
+            String value = PlaceholderAPI.setPlaceholders(player, placeholder);
+            MetricsUtil.recordPlaceholder(System.nanoTime() - start);
+            return value;
+        });
     }
 
     /*
-        Applies PlaceholderAPI placeholders to a list of strings.
+        Resolves a single PlaceholderAPI placeholder
+        into a Component, ready to fill a template slot.
 
-        This method:
-        - Accepts any number of input strings
-        - Replaces %placeholders% using PlaceholderAPI
-        - Returns the resolved strings in the same order
+        Placeholder values may contain MiniMessage tags
+        (e.g. rank prefixes), so they are deserialized with
+        the player's tags. Plain values skip parsing.
      */
-    public static List<String> applyPlaceholders(
-            Player player,
-            String... inputs
+    public static Component placeholderComponent(Player player, String placeholder) {
+        return valueComponent(player, resolvePlaceholder(player, placeholder));
+    }
+
+    /*
+        Resolves a single relational placeholder for a
+        sender/viewer pair into a Component.
+     */
+    public static Component relationalPlaceholderComponent(Player source, Player viewer, String placeholder) {
+        return valueComponent(source, applyRelationalPlaceholders(source, viewer, placeholder));
+    }
+
+    /*
+        Applies PlaceholderAPI relational placeholders (%rel_...%)
+        to a string.
+
+        Relational placeholders depend on two players, so this
+        is the only part of chat formatting that has to run
+        separately for every viewer.
+     */
+    public static String applyRelationalPlaceholders(
+            Player source,
+            Player viewer,
+            String input
     ) {
+        if (!PLACEHOLDER_API || input.indexOf('%') < 0) return input;
 
         /*
-            Convert the varargs array into a stream,
-            process each string, and collect the results.
+            Snapshot mode never calls PlaceholderAPI off the main thread.
+
+            Relational values depend on the sender and viewer pair, so
+            they can't be snapshotted per player. They are left empty
+            instead, with a warning the first time it happens.
          */
-        return Arrays.stream(inputs)
-                /*
-                    For each string, apply PlaceholderAPI placeholders
-                    using the given player as context.
-                 */
-                .map(s -> PlaceholderAPI.setPlaceholders(player, s))
-                // Collect the resolved strings into an immutable list.
-                .toList();
+        if (PlaceholderSnapshotUtil.isEnabled() && !Bukkit.isPrimaryThread()) {
+            if (!relationalWarned.getAndSet(true)) {
+                KJControl.getInstance().getComponentLogger().warn(
+                        "Relational placeholders (%rel_...%) can't be used in chat "
+                                + "while placeholder-snapshots is enabled, so they are left empty"
+                );
+            }
+            return RELATIONAL_PATTERN.matcher(input).replaceAll("");
+        }
+
+        long start = System.nanoTime();
+        String value = PlaceholderAPI.setRelationalPlaceholders(source, viewer, input);
+        MetricsUtil.recordPlaceholder(System.nanoTime() - start);
+        return value;
+    }
+
+    /*
+        Turns a resolved placeholder value into a Component.
+
+        Most values are plain text, so MiniMessage is only
+        used when the value could actually contain a tag.
+     */
+    private static Component valueComponent(Player player, String value) {
+        if (value.indexOf('<') < 0) return Component.text(value);
+        return deserialize(value, player);
+    }
+
+    /*
+        Resolves the internal <username> and <displayname>
+        placeholders for a single player.
+
+        - <username>    resolves to the player's name
+        - <displayname> resolves to the player's display name,
+                        preserving any colours or formatting
+     */
+    private record PlayerTagResolver(Player player) implements TagResolver {
+
+        @Override
+        public @Nullable Tag resolve(
+                @NotNull String name, @NotNull ArgumentQueue arguments, @NotNull Context ctx
+        ) throws ParsingException {
+            return switch (name) {
+                case "username" -> Tag.selfClosingInserting(player.name());
+                case "displayname" -> Tag.selfClosingInserting(player.displayName());
+                default -> null;
+            };
+        }
+
+        @Override
+        public boolean has(@NotNull String name) {
+            return name.equals("username") || name.equals("displayname");
+        }
     }
 
 }
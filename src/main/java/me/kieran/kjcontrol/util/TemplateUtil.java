@@ -0,0 +1,281 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.PlaceholderAnalysis;
+import me.kieran.kjcontrol.record.Template;
+import me.kieran.kjcontrol.record.TemplateSlot;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.KeybindComponent;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+public final class TemplateUtil {
+
+    /*
+        Name of the internal tag used for the chat message body.
+
+        Appended to the end of the suffix so the message is
+        placed inside whatever styles the suffix leaves open.
+     */
+    public static final String MESSAGE_TAG = "kjcontrol_message";
+
+    /*
+        Name of the internal tag that stands in for a
+        PlaceholderAPI placeholder while compiling.
+     */
+    private static final String PLACEHOLDER_TAG = "kjcontrol_placeholder";
+
+    /*
+        Prefix of the keybind used to mark a slot in a compiled tree.
+
+        Keybind components are used as markers because MiniMessage
+        compacts neighbouring text components together, which would
+        merge a text marker into the text around it.
+     */
+    private static final String SLOT_PREFIX = "kjcontrol.slot.";
+
+    /*
+        MiniMessage tags that change the text of their children
+        after parsing (per-character colours).
+
+        A value swapped in later would miss these effects, so
+        strings using them together with slots stay dynamic.
+     */
+    private static final List<String> MODIFYING_TAGS = List.of(
+            "<gradient", "<rainbow", "<transition", "<pride"
+    );
+
+    /*
+        Compiles a format string with no message slot.
+     */
+    public static Template compile(String raw) {
+        return compile(raw, false);
+    }
+
+    /*
+        Compiles a format string into a Template.
+
+        This method:
+        1. Replaces every PlaceholderAPI placeholder with an internal tag
+        2. Parses the whole string with MiniMessage once
+        3. Turns placeholders, <username>, <displayname> and the
+           message body into slot markers in the parsed tree
+
+        Strings that can not be compiled safely are returned
+        as dynamic templates instead.
+
+        @param raw         The raw MiniMessage string from the config
+        @param withMessage Whether a message slot should be added at the end
+     */
+    public static Template compile(String raw, boolean withMessage) {
+        String source = withMessage ? raw + "<" + MESSAGE_TAG + ">" : raw;
+
+        /*
+            Work out which placeholders the string uses before doing
+            anything else. Strings without any never touch PlaceholderAPI.
+         */
+        PlaceholderAnalysis analysis = ResolveUtil.analysePlaceholders(source);
+
+        /*
+            Swap each placeholder out for an indexed internal tag.
+
+            A placeholder inside a tag (e.g. a click command or hover
+            argument) can not become a slot, as its value changes
+            the tag itself. Those strings are left dynamic.
+         */
+        List<TemplateSlot> placeholders = new ArrayList<>();
+        StringBuilder marked = new StringBuilder();
+        Matcher matcher = ResolveUtil.PLACEHOLDER_PATTERN.matcher(source);
+        int last = 0;
+
+        while (!analysis.isConstant() && matcher.find()) {
+            String placeholder = matcher.group();
+            if (isInsideTag(source, matcher.start())
+                    || placeholder.indexOf('<') >= 0
+                    || placeholder.indexOf('>') >= 0) {
+                return dynamic(source, analysis);
+            }
+
+            marked.append(source, last, matcher.start())
+                    .append('<').append(PLACEHOLDER_TAG).append(':').append(placeholders.size()).append('>');
+
+            placeholders.add(new TemplateSlot(
+                    placeholder.startsWith("%rel_") ? TemplateSlot.Type.RELATIONAL : TemplateSlot.Type.PLACEHOLDER,
+                    placeholder
+            ));
+            last = matcher.end();
+        }
+        marked.append(source, last, source.length());
+
+        /*
+            Parse the string once, with each slot tag resolving
+            to a marker that records its position in the tree.
+         */
+        List<TemplateSlot> slots = new ArrayList<>();
+        TagResolver resolver = TagResolver.resolver(
+                TagResolver.resolver(PLACEHOLDER_TAG, (args, context) -> slot(
+                        slots, placeholders.get(args.popOr("Missing placeholder index").asInt().orElseThrow())
+                )),
+                TagResolver.resolver("username", (args, context) ->
+                        slot(slots, new TemplateSlot(TemplateSlot.Type.USERNAME, null))),
+                TagResolver.resolver("displayname", (args, context) ->
+                        slot(slots, new TemplateSlot(TemplateSlot.Type.DISPLAYNAME, null))),
+                TagResolver.resolver(MESSAGE_TAG, (args, context) ->
+                        slot(slots, new TemplateSlot(TemplateSlot.Type.MESSAGE, null)))
+        );
+
+        Component component = ResolveUtil.serializer().deserialize(marked.toString(), resolver);
+
+        if (!slots.isEmpty() && containsModifyingTag(source)) return dynamic(source, analysis);
+
+        return new Template(source, component, List.copyOf(slots), analysis, false);
+    }
+
+    /*
+        Compiles a string whose only slot is a single value tag,
+        such as <count> in the join/quit summaries.
+
+        These strings aren't about one player, so PlaceholderAPI
+        and the <username>/<displayname> tags aren't used. Every
+        use of the tag becomes a MESSAGE slot, filled in with
+        Template.renderValue().
+
+        @param raw The raw MiniMessage string from the config
+        @param tag The name of the value tag, e.g. "count"
+     */
+    public static Template compileValue(String raw, String tag) {
+        List<TemplateSlot> slots = new ArrayList<>();
+        Component component = ResolveUtil.serializer().deserialize(
+                raw,
+                TagResolver.resolver(tag, (args, context) ->
+                        slot(slots, new TemplateSlot(TemplateSlot.Type.MESSAGE, null)))
+        );
+
+        if (!slots.isEmpty() && containsModifyingTag(raw)) return dynamic(raw, PlaceholderAnalysis.CONSTANT);
+
+        return new Template(raw, component, List.copyOf(slots), PlaceholderAnalysis.CONSTANT, false);
+    }
+
+    /*
+        Works out the style that text placed at the very end of a
+        format string would have.
+
+        This is the style a MiniMessage string "leaves open", e.g.
+        "<gray>: <white>" ends with white text. It is found once by
+        parsing the string with a marker at the end and combining
+        the styles of every component on the way down to it.
+     */
+    public static Style trailingStyle(String raw) {
+        Component parsed = ResolveUtil.serializer().deserialize(
+                raw + "<" + MESSAGE_TAG + ">",
+                TagResolver.resolver(MESSAGE_TAG, Tag.selfClosingInserting(Component.keybind(SLOT_PREFIX + 0)))
+        );
+
+        Style style = markerStyle(parsed, Style.empty());
+        return style == null ? Style.empty() : style;
+    }
+
+    /*
+        Returns the slot index of a marker, or -1 if the
+        keybind is not a marker for one of this template's slots.
+
+        A keybind can also come from a player's own text (e.g.
+        "<key:kjcontrol.slot.7>" in LEGACY message mode), so
+        anything that is not a plain number below slotCount is
+        ignored rather than trusted.
+
+        @param slotCount The number of slots in the template
+     */
+    public static int slotIndex(KeybindComponent marker, int slotCount) {
+        String keybind = marker.keybind();
+        if (!keybind.startsWith(SLOT_PREFIX)) return -1;
+
+        int length = keybind.length() - SLOT_PREFIX.length();
+        if (length == 0 || length > 9) return -1;
+
+        int index = 0;
+        for (int i = SLOT_PREFIX.length(); i < keybind.length(); i++) {
+            char c = keybind.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            index = index * 10 + (c - '0');
+        }
+        return index < slotCount ? index : -1;
+    }
+
+    /*
+        Registers a new slot and returns the tag that
+        inserts its marker into the parsed tree.
+     */
+    private static Tag slot(List<TemplateSlot> slots, TemplateSlot slot) {
+        slots.add(slot);
+        return Tag.selfClosingInserting(Component.keybind(SLOT_PREFIX + (slots.size() - 1)));
+    }
+
+    /*
+        Creates a template that is parsed on every render.
+     */
+    private static Template dynamic(String source, PlaceholderAnalysis analysis) {
+        return new Template(source, null, List.of(), analysis, true);
+    }
+
+    /*
+        Checks whether the character at the given index sits
+        inside a MiniMessage tag, such as <click:run_command:'...'>.
+
+        Quoted tag arguments and escaped characters are
+        skipped so they can not end a tag early.
+     */
+    private static boolean isInsideTag(String source, int index) {
+        boolean inTag = false;
+        char quote = 0;
+
+        for (int i = 0; i < index; i++) {
+            char c = source.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (!inTag) {
+                if (c == '<') inTag = true;
+            } else if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '>') {
+                inTag = false;
+            }
+        }
+        return inTag;
+    }
+
+    /*
+        Finds the effective style of the first marker in a tree,
+        or null if there is no marker below this node.
+
+        Each node's own style wins over what it inherits, which
+        mirrors how a client renders nested components. Children
+        are searched from the end, since the marker is always last.
+     */
+    private static Style markerStyle(Component node, Style inherited) {
+        Style style = node.style().merge(inherited, Style.Merge.Strategy.IF_ABSENT_ON_TARGET);
+        if (node instanceof KeybindComponent marker && slotIndex(marker, 1) >= 0) return style;
+
+        List<Component> children = node.children();
+        for (int i = children.size() - 1; i >= 0; i--) {
+            Style found = markerStyle(children.get(i), style);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    private static boolean containsModifyingTag(String source) {
+        for (String tag : MODIFYING_TAGS) {
+            if (source.contains(tag)) return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,73 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.ChatHistoryEntry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatHistoryUtilTest {
+
+    private static final UUID SENDER = new UUID(0, 0);
+
+    private static ChatHistoryEntry entry(String message, boolean global) {
+        return new ChatHistoryEntry(SENDER, "player", 0, message, 0, global);
+    }
+
+    private static List<String> messages(List<ChatHistoryEntry> entries) {
+        return entries.stream().map(ChatHistoryEntry::message).toList();
+    }
+
+    @Test
+    void linesAreReplayedOldestFirst() {
+        AtomicReferenceArray<ChatHistoryEntry> slots = new AtomicReferenceArray<>(3);
+        AtomicLong written = new AtomicLong();
+        ChatHistoryUtil.record(slots, written, entry("a", true));
+        ChatHistoryUtil.record(slots, written, entry("b", true));
+
+        assertEquals(List.of("a", "b"), messages(ChatHistoryUtil.getRecent(slots, written.get(), 10, false)));
+    }
+
+    @Test
+    void newLinesOverwriteTheOldestOnceFull() {
+        AtomicReferenceArray<ChatHistoryEntry> slots = new AtomicReferenceArray<>(3);
+        AtomicLong written = new AtomicLong();
+        for (String message : List.of("a", "b", "c", "d", "e"))
+            ChatHistoryUtil.record(slots, written, entry(message, true));
+
+        assertEquals(List.of("c", "d", "e"), messages(ChatHistoryUtil.getRecent(slots, written.get(), 10, false)));
+    }
+
+    @Test
+    void limitKeepsTheMostRecentLines() {
+        AtomicReferenceArray<ChatHistoryEntry> slots = new AtomicReferenceArray<>(3);
+        AtomicLong written = new AtomicLong();
+        for (String message : List.of("a", "b", "c", "d"))
+            ChatHistoryUtil.record(slots, written, entry(message, true));
+
+        assertEquals(List.of("c", "d"), messages(ChatHistoryUtil.getRecent(slots, written.get(), 2, false)));
+    }
+
+    @Test
+    void localLinesAreSkippedWhenReplaying() {
+        AtomicReferenceArray<ChatHistoryEntry> slots = new AtomicReferenceArray<>(4);
+        AtomicLong written = new AtomicLong();
+        ChatHistoryUtil.record(slots, written, entry("a", true));
+        ChatHistoryUtil.record(slots, written, entry("b", false));
+        ChatHistoryUtil.record(slots, written, entry("c", true));
+
+        assertEquals(List.of("a", "c"), messages(ChatHistoryUtil.getRecent(slots, written.get(), 2, true)));
+        assertEquals(List.of("b", "c"), messages(ChatHistoryUtil.getRecent(slots, written.get(), 2, false)));
+    }
+
+    @Test
+    void emptyBufferHasNoLines() {
+        assertTrue(ChatHistoryUtil.getRecent(new AtomicReferenceArray<>(0), 5, 10, false).isEmpty());
+        assertTrue(ChatHistoryUtil.getRecent(new AtomicReferenceArray<>(3), 0, 10, false).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.ChatLimitTier;
+import me.kieran.kjcontrol.record.ChatRateState;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ChatLimitUtilTest {
+
+    // 2 messages back to back, refilling at 1 per second, repeats blocked for 5 seconds.
+    private static final ChatLimitTier TIER =
+            new ChatLimitTier("default", 0, "", 2, 1, TimeUnit.SECONDS.toNanos(5));
+
+    private static AtomicReference<ChatRateState> bucket(ChatLimitTier tier) {
+        return new AtomicReference<>(new ChatRateState(tier.burst(), 0, null, 0));
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void burstIsAllowedThenLimited() {
+        AtomicReference<ChatRateState> bucket = bucket(TIER);
+
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "a", 0));
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "b", 0));
+        assertEquals(ChatLimitUtil.Result.RATE_LIMITED, ChatLimitUtil.consume(bucket, TIER, "c", 0));
+    }
+
+    @Test
+    void tokensRefillOverTime() {
+        AtomicReference<ChatRateState> bucket = bucket(TIER);
+        ChatLimitUtil.consume(bucket, TIER, "a", 0);
+        ChatLimitUtil.consume(bucket, TIER, "b", 0);
+
+        assertEquals(ChatLimitUtil.Result.RATE_LIMITED, ChatLimitUtil.consume(bucket, TIER, "c", millis(999)));
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "d", millis(1000)));
+        assertEquals(ChatLimitUtil.Result.RATE_LIMITED, ChatLimitUtil.consume(bucket, TIER, "e", millis(1000)));
+    }
+
+    @Test
+    void refillStopsAtTheBurst() {
+        AtomicReference<ChatRateState> bucket = bucket(TIER);
+        ChatLimitUtil.consume(bucket, TIER, "a", 0);
+
+        long later = millis(60_000);
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "b", later));
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "c", later));
+        assertEquals(ChatLimitUtil.Result.RATE_LIMITED, ChatLimitUtil.consume(bucket, TIER, "d", later));
+    }
+
+    @Test
+    void blockedMessagesUseNothingUp() {
+        AtomicReference<ChatRateState> bucket = bucket(TIER);
+        ChatLimitUtil.consume(bucket, TIER, "a", 0);
+        ChatLimitUtil.consume(bucket, TIER, "b", 0);
+
+        ChatRateState before = bucket.get();
+        ChatLimitUtil.consume(bucket, TIER, "c", 0);
+        ChatLimitUtil.consume(bucket, TIER, "b", millis(2000));
+
+        assertSame(before, bucket.get());
+    }
+
+    @Test
+    void repeatsAreBlockedForTheDuplicateWindow() {
+        AtomicReference<ChatRateState> bucket = bucket(TIER);
+
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "hi", 0));
+        assertEquals(ChatLimitUtil.Result.DUPLICATE, ChatLimitUtil.consume(bucket, TIER, "hi", millis(4999)));
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, TIER, "hi", millis(5000)));
+    }
+
+    @Test
+    void repeatsAreAllowedWithoutADuplicateWindow() {
+        ChatLimitTier tier = new ChatLimitTier("default", 0, "", 2, 1, 0);
+        AtomicReference<ChatRateState> bucket = bucket(tier);
+
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, tier, "hi", 0));
+        assertEquals(ChatLimitUtil.Result.ALLOWED, ChatLimitUtil.consume(bucket, tier, "hi", 0));
+    }
+}
@@ -0,0 +1,63 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.FilterResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterUtilTest {
+
+    // The fold table with unicode and leetspeak normalisation on (the defaults).
+    private static final char[] FOLD = FilterUtil.buildFoldTable(true, true);
+
+    private static FilterUtil.Automaton automaton(String censored, String blocked) {
+        Map<String, Boolean> words = new LinkedHashMap<>();
+        if (censored != null) words.put(FilterUtil.normalise(censored, FOLD), false);
+        if (blocked != null) words.put(FilterUtil.normalise(blocked, FOLD), true);
+        return FilterUtil.Automaton.compile(words);
+    }
+
+    private static String censor(String message) {
+        return automaton("bad", null).filter(message, FOLD, '*', true).message();
+    }
+
+    @Test
+    void wholeWordsNextToPunctuationAreCensored() {
+        assertEquals("***!", censor("bad!"));
+        assertEquals("$***", censor("$bad"));
+        assertEquals("(***)", censor("(bad)"));
+        assertEquals("|***|", censor("|bad|"));
+        assertEquals("that's ***, ok", censor("that's bad, ok"));
+    }
+
+    @Test
+    void wholeWordsNextToDigitsAreCensored() {
+        assertEquals("***1", censor("bad1"));
+        assertEquals("0***", censor("0bad"));
+    }
+
+    @Test
+    void wordsInsideLongerWordsAreLeftAlone() {
+        assertEquals("badge", censor("badge"));
+        assertEquals("xbad", censor("xbad"));
+        assertEquals("b4dass", censor("b4dass"));
+    }
+
+    @Test
+    void leetspeakInsideTheWordStillMatches() {
+        assertEquals("***.", censor("b4d."));
+    }
+
+    @Test
+    void blockedWordNextToPunctuationBlocksTheMessage() {
+        FilterResult result = automaton(null, "bad").filter("bad!", FOLD, '*', true);
+        assertTrue(result.blocked());
+
+        assertFalse(automaton(null, "bad").filter("badge", FOLD, '*', true).blocked());
+    }
+}
@@ -0,0 +1,71 @@
+package me.kieran.kjcontrol.util;
+
+import me.kieran.kjcontrol.record.Template;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TemplateUtilTest {
+
+    private static int slotIndex(String keybind, int slotCount) {
+        return TemplateUtil.slotIndex(Component.keybind(keybind), slotCount);
+    }
+
+    private static String plain(Component component) {
+        return PlainTextComponentSerializer.plainText().serialize(component);
+    }
+
+    @Test
+    void markersRoundTripToTheirSlot() {
+        assertEquals(0, slotIndex("kjcontrol.slot.0", 1));
+        assertEquals(7, slotIndex("kjcontrol.slot.7", 8));
+        assertEquals(12, slotIndex("kjcontrol.slot.12", 13));
+    }
+
+    @Test
+    void malformedMarkersAreRejected() {
+        assertEquals(-1, slotIndex("kjcontrol.slot.", 1));
+        assertEquals(-1, slotIndex("kjcontrol.slot.-1", 1));
+        assertEquals(-1, slotIndex("kjcontrol.slot.+1", 2));
+        assertEquals(-1, slotIndex("kjcontrol.slot.1a", 2));
+        assertEquals(-1, slotIndex("kjcontrol.slot.99999999999", Integer.MAX_VALUE));
+        assertEquals(-1, slotIndex("key.jump", 1));
+    }
+
+    @Test
+    void markersOutsideTheTemplateAreRejected() {
+        assertEquals(-1, slotIndex("kjcontrol.slot.1", 1));
+        assertEquals(-1, slotIndex("kjcontrol.slot.0", 0));
+    }
+
+    @Test
+    void compiledTemplateFillsItsSlots() {
+        Template template = TemplateUtil.compile("<gray>Hi ", true);
+
+        assertFalse(template.dynamic());
+        assertEquals(1, template.slots().size());
+        assertEquals("Hi there", plain(template.render(null, Component.text("there"), null)));
+    }
+
+    @Test
+    void everyUseOfAValueTagIsFilled() {
+        Template template = TemplateUtil.compileValue("<green>+ <count> / <count>", "count");
+
+        assertEquals(2, template.slots().size());
+        assertEquals("+ 7 / 7", plain(template.renderValue("count", Component.text(7))));
+    }
+
+    @Test
+    void markersInsideAValueAreLeftAlone() {
+        Template template = TemplateUtil.compile("<gray>Hi ", true);
+
+        // A player typing <key:kjcontrol.slot.0> must not be able to pull in another slot's value.
+        Component message = Component.keybind("kjcontrol.slot.0");
+        Component rendered = template.render(null, message, null);
+
+        assertEquals("Hi kjcontrol.slot.0", plain(rendered));
+    }
+}